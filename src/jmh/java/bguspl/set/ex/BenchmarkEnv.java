@@ -0,0 +1,44 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.SystemClock;
+import bguspl.set.UtilImpl;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The environment of the benchmarks: computer players only, no user interface, no logging and no delays or
+ * freezes, on real time.
+ */
+final class BenchmarkEnv {
+
+    private BenchmarkEnv() {}
+
+    static Env create(int players) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("TurnTimeoutSeconds", "0");
+        properties.setProperty("CountdownFps", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new NullUserInterface(), new UtilImpl(config), new SystemClock());
+    }
+
+    /**
+     * Fills all the slots of the table, card i in slot i.
+     */
+    static void fill(Table table, Env env) {
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+}
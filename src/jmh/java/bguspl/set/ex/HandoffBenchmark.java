@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The round trip latency of a claim's handshake with zero delays: the player notifies the dealer and waits
+ * (Player.waitForRulling), the dealer takes the claim off its queue, checks it and notifies the player
+ * (Dealer.sleepUntilWokenOrTimeout), and the player wakes up. The dealer runs its side in a loop on a thread of its
+ * own, and each benchmark thread is a player whose claim is never a set (so the table never changes). The groups
+ * measure a single player and players contending for the dealer.
+ *
+ * java -jar target/Set_Card_Game-1.0-SNAPSHOT-benchmarks.jar HandoffBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandoffBenchmark {
+
+    private static final int MAX_PLAYERS = 64;
+
+    /**
+     * The slots of every player's claim: cards 0, 1 and 3 (features 0000, 0001 and 0010) are not a set.
+     */
+    private static final int[] CLAIM = {0, 1, 3};
+
+    private Player[] players;
+    private Dealer dealer;
+    private Thread dealerThread;
+    private volatile boolean stop;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Env env = BenchmarkEnv.create(MAX_PLAYERS);
+        Table table = new Table(env);
+        BenchmarkEnv.fill(table, env);
+        players = new Player[MAX_PLAYERS];
+        dealer = new Dealer(env, table, players);
+        for (int id = 0; id < players.length; id++) {
+            players[id] = new Player(env, dealer, table, id, false);
+            table.placeTokens(id, CLAIM);
+        }
+        dealerThread = new Thread(() -> {
+            while (!stop)
+                dealer.sleepUntilWokenOrTimeout();
+        }, "dealer");
+        dealerThread.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        stop = true;
+        dealerThread.join();
+    }
+
+    /**
+     * A player of the group.
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        private static final AtomicInteger nextId = new AtomicInteger();
+
+        int id;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            id = nextId.getAndIncrement() % MAX_PLAYERS;
+        }
+    }
+
+    @Benchmark
+    @Group("players1")
+    @GroupThreads(1)
+    public void players1(PlayerState player) throws InterruptedException {
+        players[player.id].waitForRulling();
+    }
+
+    @Benchmark
+    @Group("players4")
+    @GroupThreads(4)
+    public void players4(PlayerState player) throws InterruptedException {
+        players[player.id].waitForRulling();
+    }
+
+    @Benchmark
+    @Group("players16")
+    @GroupThreads(16)
+    public void players16(PlayerState player) throws InterruptedException {
+        players[player.id].waitForRulling();
+    }
+
+    @Benchmark
+    @Group("players64")
+    @GroupThreads(64)
+    public void players64(PlayerState player) throws InterruptedException {
+        players[player.id].waitForRulling();
+    }
+}
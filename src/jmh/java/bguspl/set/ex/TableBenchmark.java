@@ -0,0 +1,113 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The throughput of Table.placeToken and removeToken while 2 to 64 players contend for the table. Each group is a
+ * table with its number of players, and each operation toggles a token of a player: the token is placed on a slot
+ * and removed again (like two presses of the same key), the next operation uses the next slot.
+ *
+ * java -jar target/Set_Card_Game-1.0-SNAPSHOT-benchmarks.jar TableBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    private static final int MAX_PLAYERS = 64;
+
+    private Table table;
+    private int tableSize;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Env env = BenchmarkEnv.create(MAX_PLAYERS);
+        table = new Table(env);
+        tableSize = env.config.tableSize;
+        BenchmarkEnv.fill(table, env);
+    }
+
+    /**
+     * A player of the group: its id, and the slot of its next token.
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        private static final AtomicInteger nextId = new AtomicInteger();
+
+        int id;
+        int slot;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            id = nextId.getAndIncrement() % MAX_PLAYERS;
+            slot = id;
+        }
+    }
+
+    private void toggle(PlayerState player) {
+        player.slot = (player.slot + 1) % tableSize;
+        table.placeToken(player.id, player.slot);
+        table.removeToken(player.id, player.slot);
+    }
+
+    @Benchmark
+    @Group("players2")
+    @GroupThreads(2)
+    public void players2(PlayerState player) {
+        toggle(player);
+    }
+
+    @Benchmark
+    @Group("players4")
+    @GroupThreads(4)
+    public void players4(PlayerState player) {
+        toggle(player);
+    }
+
+    @Benchmark
+    @Group("players8")
+    @GroupThreads(8)
+    public void players8(PlayerState player) {
+        toggle(player);
+    }
+
+    @Benchmark
+    @Group("players16")
+    @GroupThreads(16)
+    public void players16(PlayerState player) {
+        toggle(player);
+    }
+
+    @Benchmark
+    @Group("players32")
+    @GroupThreads(32)
+    public void players32(PlayerState player) {
+        toggle(player);
+    }
+
+    @Benchmark
+    @Group("players64")
+    @GroupThreads(64)
+    public void players64(PlayerState player) {
+        toggle(player);
+    }
+}
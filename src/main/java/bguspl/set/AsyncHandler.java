@@ -0,0 +1,139 @@
+package bguspl.set;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that moves the formatting and writing of log records off the calling threads.
+ * Records are put in a bounded buffer and handed to the wrapped handler by a dedicated writer thread.
+ * If the buffer is full the record is dropped (logging never blocks the game threads).
+ * Closing stops taking records first, and then waits for the writer thread to write all the records it took.
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * Tells the writer thread that all the records were written (compared by identity).
+     */
+    private static final LogRecord END = new LogRecord(Level.OFF, "");
+
+    private final Handler handler;
+    private final BlockingQueue<LogRecord> buffer;
+    private final Thread writer;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+
+    /**
+     * True iff the handler no longer takes records. Set holding the write lock, so no record is being put in the
+     * buffer once it is set (publish holds the read lock).
+     */
+    private volatile boolean closed;
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    /**
+     * @param handler    - the handler that formats and writes the records.
+     * @param bufferSize - the maximum number of records waiting to be written.
+     */
+    public AsyncHandler(Handler handler, int bufferSize) {
+        this.handler = handler;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        setLevel(handler.getLevel());
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        closing.readLock().lock();
+        try {
+            if (closed) return;
+            if (buffer.offer(record)) published.incrementAndGet();
+            else dropped.incrementAndGet();
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until all the records published so far are written, and flushes the wrapped handler.
+     */
+    @Override
+    public void flush() {
+        long target = published.get();
+        try {
+            while (written < target && writer.isAlive())
+                Thread.sleep(1);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        handler.flush();
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        closing.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            buffer.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handler.flush();
+        long lost = dropped.get();
+        if (lost > 0)
+            handler.publish(new LogRecord(Level.WARNING, lost + " log records were dropped (log buffer was full)."));
+        handler.close();
+    }
+
+    @Override
+    public synchronized void setFormatter(Formatter formatter) throws SecurityException {
+        super.setFormatter(formatter);
+        handler.setFormatter(formatter);
+    }
+
+    @Override
+    public synchronized void setLevel(Level level) throws SecurityException {
+        super.setLevel(level);
+        handler.setLevel(level);
+    }
+
+    /**
+     * @return - the number of records taken (put in the buffer).
+     */
+    long published() {
+        return published.get();
+    }
+
+    /**
+     * @return - the number of records dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    // The main loop of the writer thread (until the end of the records taken before closing)
+    private void write() {
+        try {
+            for (LogRecord record = buffer.take(); record != END; record = buffer.take()) {
+                handler.publish(record);
+                written++;
+            }
+        } catch (InterruptedException ignored) {}
+    }
+}
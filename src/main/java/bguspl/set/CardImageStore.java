@@ -0,0 +1,143 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Decodes the card images off the event dispatch thread, so the window comes up before the images are ready.
+ * With CardImageLoading=BACKGROUND all the images are decoded in parallel at startup, and with LAZY each image is
+ * decoded when its card is first placed on the table.
+ * The images are read from cards/[features].png, or cut out of a single sprite atlas (CardAtlas) that holds the
+ * cards in the order of their ids, CardAtlasColumns cards per row.
+ * If there are no images for the deck (e.g. for other feature sizes and counts than the shipped ones), the cards are
+ * drawn by a CardRenderer instead, and only the images of the recently placed cards are kept.
+ */
+class CardImageStore {
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The decoding (or decoded) image of each card, null until it is first loaded (and all null if rendered).
+     */
+    private final AtomicReferenceArray<CompletableFuture<Image>> images;
+
+    /**
+     * The decoding (or decoded) sprite atlas, null if the cards have separate images.
+     */
+    private final CompletableFuture<BufferedImage> atlas;
+
+    private final ExecutorService decoders;
+
+    /**
+     * Draws the cards that have no images (all of them, if rendered is true).
+     */
+    private final CardRenderer renderer;
+    private final boolean rendered;
+
+    CardImageStore(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        AtomicInteger threadNumber = new AtomicInteger();
+        decoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "card-decoder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        atlas = config.cardAtlas.isEmpty() ? null : CompletableFuture.supplyAsync(() -> read(config.cardAtlas), decoders);
+        renderer = new CardRenderer(config, new UtilImpl(config), 2 * config.tableSize);
+        rendered = atlas == null && config.deckSize > 0 && (resource("cards/" + fileName(0, config) + ".png") == null
+                || resource("cards/" + fileName(config.deckSize - 1, config) + ".png") == null);
+        images = new AtomicReferenceArray<>(rendered ? 0 : config.deckSize);
+        if (rendered)
+            logger.info("there are no card images for this deck, the cards will be drawn");
+        else if (config.cardImageLoading.equals("BACKGROUND"))
+            for (int card = 0; card < config.deckSize; card++)
+                load(card);
+    }
+
+    /**
+     * @return - the name of the image file of a card: its features, one digit each.
+     */
+    static String fileName(int card, Config config) {
+        char[] digits = new char[config.featureCount];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = Character.forDigit(card % config.featureSize, config.featureSize);
+            card /= config.featureSize;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Starts decoding the image of a card, unless it was already started.
+     *
+     * @return - the image, when it is decoded.
+     */
+    CompletableFuture<Image> load(int card) {
+        if (rendered) return CompletableFuture.completedFuture(renderer.render(card));
+        CompletableFuture<Image> image = images.get(card);
+        if (image != null) return image;
+        CompletableFuture<Image> decoding = new CompletableFuture<>();
+        if (!images.compareAndSet(card, null, decoding)) return images.get(card);
+        decoders.execute(() -> {
+            try {
+                decoding.complete(decode(card));
+            } catch (RuntimeException e) {
+                logger.severe("cannot load the image of card " + card + ", drawing it instead: " + e.getMessage());
+                decoding.complete(renderer.render(card));
+            }
+        });
+        return decoding;
+    }
+
+    /**
+     * @return - the image of a card, or null if it is not decoded yet.
+     */
+    Image image(int card) {
+        if (rendered) return renderer.render(card);
+        CompletableFuture<Image> image = images.get(card);
+        return image != null && image.isDone() ? image.join() : null;
+    }
+
+    private Image decode(int card) {
+        if (atlas == null)
+            return read("cards/" + fileName(card, config) + ".png");
+        BufferedImage sprites = atlas.join();
+        int width = sprites.getWidth() / config.cardAtlasColumns;
+        int height = sprites.getHeight() / ((config.deckSize + config.cardAtlasColumns - 1) / config.cardAtlasColumns);
+        return sprites.getSubimage((card % config.cardAtlasColumns) * width, (card / config.cardAtlasColumns) * height, width, height);
+    }
+
+    /**
+     * @return - the image of an empty slot.
+     */
+    Image emptyCard() {
+        return resource("cards/empty_card.png") == null ? renderer.renderEmpty() : read("cards/empty_card.png");
+    }
+
+    private static URL resource(String filename) {
+        return CardImageStore.class.getClassLoader().getResource(filename);
+    }
+
+    static BufferedImage read(String filename) {
+        URL imageResource = resource(filename);
+        if (imageResource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            return ImageIO.read(imageResource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws card images from the cards' features, for decks that have no image files.
+ * The features are drawn as: the number of symbols, their color, their shape and their fill (any further features
+ * are written at the bottom of the card). The images are kept in a bounded LRU cache, so the memory used depends on
+ * the number of cards on the table and not on the size of the deck.
+ */
+class CardRenderer {
+
+    private static final Color BACKGROUND = new Color(250, 250, 245);
+
+    private final Config config;
+    private final Util util;
+    private final int width;
+    private final int height;
+
+    /**
+     * The recently drawn cards, in access order.
+     */
+    private final Map<Integer, BufferedImage> cache;
+
+    /**
+     * @param capacity - the maximum number of cached card images.
+     */
+    CardRenderer(Config config, Util util, int capacity) {
+        this.config = config;
+        this.util = util;
+        width = config.cellWidth;
+        height = config.cellHeight;
+        cache = new LinkedHashMap<Integer, BufferedImage>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return - the image of a card (drawn now, unless it is cached).
+     */
+    synchronized BufferedImage render(int card) {
+        BufferedImage image = cache.get(card);
+        if (image == null) {
+            image = draw(util.cardToFeatures(card));
+            cache.put(card, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return - the image of an empty slot.
+     */
+    BufferedImage renderEmpty() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.LIGHT_GRAY);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    private BufferedImage draw(int[] features) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.DARK_GRAY);
+        g.drawRoundRect(4, 4, width - 9, height - 9, 16, 16);
+
+        int count = 1 + feature(features, 0);
+        Color color = Color.getHSBColor((float) feature(features, 1) / config.featureSize, 0.8f, 0.75f);
+        int shape = feature(features, 2);
+        int fill = feature(features, 3);
+
+        // the symbols are laid out in one row, centered, a quarter of a symbol apart
+        int symbolWidth = Math.min((width - 24) * 4 / (5 * count - 1), height / 2);
+        int symbolHeight = height / 2;
+        int gap = symbolWidth / 4;
+        int left = (width - count * symbolWidth - (count - 1) * gap) / 2;
+        int top = (height - symbolHeight) / 2;
+        for (int i = 0; i < count; i++) {
+            Shape symbol = symbol(shape, left + i * (symbolWidth + gap), top, symbolWidth, symbolHeight);
+            fill(g, symbol, fill, color);
+            g.setColor(color);
+            g.setStroke(new BasicStroke(2));
+            g.draw(symbol);
+        }
+
+        if (features.length > 4) {
+            StringBuilder rest = new StringBuilder();
+            for (int i = 4; i < features.length; i++)
+                rest.append(i > 4 ? " " : "").append(features[i]);
+            g.setColor(Color.DARK_GRAY);
+            g.setFont(new Font("SansSerif", Font.PLAIN, Math.max(10, height / 10)));
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(rest.toString(), (width - metrics.stringWidth(rest.toString())) / 2, height - 12);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static int feature(int[] features, int index) {
+        return index < features.length ? features[index] : 0;
+    }
+
+    // Oval, diamond and rectangle, then polygons with more and more sides
+    private static Shape symbol(int shape, int x, int y, int width, int height) {
+        switch (shape) {
+            case 0:
+                return new Ellipse2D.Double(x, y, width, height);
+            case 1: {
+                Path2D.Double diamond = new Path2D.Double();
+                diamond.moveTo(x + width / 2.0, y);
+                diamond.lineTo(x + width, y + height / 2.0);
+                diamond.lineTo(x + width / 2.0, y + height);
+                diamond.lineTo(x, y + height / 2.0);
+                diamond.closePath();
+                return diamond;
+            }
+            case 2:
+                return new Rectangle2D.Double(x, y, width, height);
+            default: {
+                int sides = shape + 1;
+                Path2D.Double polygon = new Path2D.Double();
+                for (int i = 0; i < sides; i++) {
+                    double angle = -Math.PI / 2 + 2 * Math.PI * i / sides;
+                    double px = x + width / 2.0 + Math.cos(angle) * width / 2.0;
+                    double py = y + height / 2.0 + Math.sin(angle) * height / 2.0;
+                    if (i == 0) polygon.moveTo(px, py);
+                    else polygon.lineTo(px, py);
+                }
+                polygon.closePath();
+                return polygon;
+            }
+        }
+    }
+
+    // Empty, striped and solid, then translucent fills of increasing opacity
+    private void fill(Graphics2D g, Shape symbol, int fill, Color color) {
+        if (fill == 0) return;
+        if (fill == 1) {
+            Shape clip = g.getClip();
+            g.clip(symbol);
+            g.setColor(color);
+            Rectangle bounds = symbol.getBounds();
+            for (int y = bounds.y; y < bounds.y + bounds.height; y += 5)
+                g.drawLine(bounds.x, y, bounds.x + bounds.width, y);
+            g.setClip(clip);
+            return;
+        }
+        int alpha = fill == 2 ? 255 : 64 + 191 * (fill - 2) / Math.max(1, config.featureSize - 2);
+        g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+        g.fill(symbol);
+    }
+}
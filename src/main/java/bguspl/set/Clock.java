@@ -0,0 +1,41 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The source of time of the game: all the game's time measurements and timed waits go through it.
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds (monotonic, only meaningful relative to other readings).
+     */
+    long millis();
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis - the time to sleep in milliseconds.
+     * @throws InterruptedException - if the sleeping thread was interrupted.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Takes an element from a queue, waiting up to the given time for one to arrive.
+     *
+     * @param queue         - the queue.
+     * @param timeoutMillis - the maximum time to wait in milliseconds.
+     * @return - the element, or null if the timeout passed first.
+     * @throws InterruptedException - if the waiting thread was interrupted.
+     */
+    <E> E poll(BlockingQueue<E> queue, long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Tells the clock when the game's wait ends if nothing happens first (the end of the turn). A clock whose time
+     * only moves when the game waits (see VirtualClock) moves there once the game has nothing else to wait for.
+     * Ignored by the real clock.
+     *
+     * @param millis - the time (see millis).
+     */
+    default void setDeadline(long millis) {}
+}
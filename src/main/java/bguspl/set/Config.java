@@ -15,12 +15,48 @@ import java.util.logging.Logger;
  */
 public class Config {
 
+    /**
+     * Whether log records are written by a dedicated thread (instead of the logging thread, see AsyncHandler)
+     */
+    public final boolean logAsync;
+
+    /**
+     * The maximum number of log records waiting to be written in asynchronous mode (see AsyncHandler)
+     */
+    public final int logBufferSize;
+
     /**
      * Random spin cycles for Config::randomSpin (for debugging / testing)
      */
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * Whether the game runs on virtual time (the dealer moves the clock to the next deadline, see VirtualClock) instead of real time
+     */
+    public final boolean virtualClock;
+
+    /**
+     * The seed of the dealer's shuffles (null for a random seed, e.g. to replay a simulation, see Simulator)
+     */
+    public final Long shuffleSeed;
+
+    /**
+     * Whether the game metrics are exposed over JMX, and the table operations timed for them (see GameMetrics and Table)
+     */
+    public final boolean metrics;
+
+    /**
+     * Whether Java Flight Recorder events are created for the dealer's and the players' hot paths (see GameEvents)
+     */
+    public final boolean jfrEvents;
+
+    /**
+     * Whether the table's monitor is profiled per thread and method, with a contention report at the end of the game
+     * (see TableProfiler)
+     */
+    public final boolean tableProfiling;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -66,6 +102,17 @@ public class Config {
      */
     public final long turnTimeoutWarningMillis;
 
+    /**
+     * The number of times a second the countdown display is updated (see CountdownTicker, 0 for every pass of the
+     * dealer's loop)
+     */
+    public final double countdownFps;
+
+    /**
+     * The number of times a second the countdown display is updated during the warning
+     */
+    public final double countdownWarningFps;
+
     /**
      * The number of milliseconds a player gets frozen for when he scores a point
      */
@@ -86,6 +133,48 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * What to do with a key press when too many are pending for a player (DROP_OLDEST, DROP_NEWEST or COALESCE, see
+     * InputBuffer)
+     */
+    public final String inputOverflowPolicy;
+
+    /**
+     * The number of regions (ranges of rows) the table is split into, each with its own dealer worker (see RegionWorker,
+     * 1 for a single dealer)
+     */
+    public final int dealerRegions;
+
+    /**
+     * The number of players in the live leaderboard (the players with the highest scores, see Scoreboard)
+     */
+    public final int leaderboardSize;
+
+    /**
+     * The file to record the game to for replaying (see GameRecorder, empty for no recording)
+     */
+    public final String recordFile;
+
+    /**
+     * Whether to write the game events to a compact binary log (see EventLog)
+     */
+    public final boolean eventLog;
+
+    /**
+     * The size (in bytes) from which a new binary event log file is started (see EventLog)
+     */
+    public final long eventLogFileBytes;
+
+    /**
+     * Whether to gzip the full binary event log files (see EventLog)
+     */
+    public final boolean eventLogCompress;
+
+    /**
+     * The path prefix of the players' career statistics files (see PlayerStatsStore, empty for no statistics)
+     */
+    public final String playerStatsFile;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +221,38 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * How the table is drawn (see CardRenderer): LABELS (the card images and a label with the names of the players
+     * with tokens on each cell) or CACHED (a cached image of the table, with a colored marker for each token)
+     */
+    public final String renderMode;
+
+    /**
+     * When the card images are decoded (see CardImageStore): BACKGROUND (all of them, in parallel, at startup) or
+     * LAZY (when the card is first placed on the table)
+     */
+    public final String cardImageLoading;
+
+    /**
+     * A single image resource holding all the card images in the order of their ids (empty for separate images)
+     */
+    public final String cardAtlas;
+
+    /**
+     * The number of cards in each row of the card atlas
+     */
+    public final int cardAtlasColumns;
+
+    /**
+     * The port remote players connect to (see NetworkGateway), -1 for no network play
+     */
+    public final int networkPort;
+
+    /**
+     * The number of updates a spectator (or remote player) may fall behind by before it is resynced (see SpectatorStream)
+     */
+    public final int spectatorQueueFrames;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -186,12 +307,21 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        logAsync = Boolean.parseBoolean(properties.getProperty("LogAsync", "False"));
+        logBufferSize = Integer.parseInt(properties.getProperty("LogBufferSize", "8192"));
+        if (logAsync) Main.setLoggerAsync(logger, logBufferSize);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        virtualClock = Boolean.parseBoolean(properties.getProperty("VirtualClock", "False"));
+        String seed = properties.getProperty("ShuffleSeed", "").trim();
+        shuffleSeed = seed.isEmpty() ? null : Long.parseLong(seed);
+        metrics = Boolean.parseBoolean(properties.getProperty("Metrics", "False"));
+        jfrEvents = Boolean.parseBoolean(properties.getProperty("JfrEvents", "False"));
+        tableProfiling = Boolean.parseBoolean(properties.getProperty("TableProfiling", "False"));
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
@@ -206,10 +336,24 @@ public class Config {
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
+        countdownFps = Double.parseDouble(properties.getProperty("CountdownFps", "10"));
+        countdownWarningFps = Double.parseDouble(properties.getProperty("CountdownWarningFps", "30"));
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        inputOverflowPolicy = properties.getProperty("InputOverflowPolicy", "DROP_NEWEST").trim().toUpperCase();
+        if (!Arrays.asList("DROP_OLDEST", "DROP_NEWEST", "COALESCE").contains(inputOverflowPolicy))
+            logger.severe("warning: unknown input overflow policy " + inputOverflowPolicy + ", using DROP_NEWEST.");
+        dealerRegions = Integer.parseInt(properties.getProperty("DealerRegions", "1"));
+        leaderboardSize = Integer.parseInt(properties.getProperty("LeaderboardSize", "10"));
+
+        // game records
+        recordFile = properties.getProperty("RecordFile", "").trim();
+        eventLog = Boolean.parseBoolean(properties.getProperty("EventLog", "False"));
+        eventLogFileBytes = (long) (Double.parseDouble(properties.getProperty("EventLogFileMegabytes", "16")) * 1024 * 1024);
+        eventLogCompress = Boolean.parseBoolean(properties.getProperty("EventLogCompress", "False"));
+        playerStatsFile = properties.getProperty("PlayerStatsFile", "").trim();
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +368,18 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        renderMode = properties.getProperty("RenderMode", "LABELS").trim().toUpperCase();
+        if (!Arrays.asList("LABELS", "CACHED").contains(renderMode))
+            logger.severe("warning: unknown render mode " + renderMode + ", using LABELS.");
+        cardImageLoading = properties.getProperty("CardImageLoading", "BACKGROUND").trim().toUpperCase();
+        if (!Arrays.asList("BACKGROUND", "LAZY").contains(cardImageLoading))
+            logger.severe("warning: unknown card image loading " + cardImageLoading + ", using LAZY.");
+        cardAtlas = properties.getProperty("CardAtlas", "").trim();
+        cardAtlasColumns = Integer.parseInt(properties.getProperty("CardAtlasColumns", "9"));
+
+        // network settings
+        networkPort = Integer.parseInt(properties.getProperty("NetworkPort", "-1"));
+        spectatorQueueFrames = Integer.parseInt(properties.getProperty("SpectatorQueueFrames", "1024"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
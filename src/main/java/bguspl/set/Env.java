@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 public class Env {
@@ -8,11 +9,40 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Clock clock;
+
+    /**
+     * Runs the game's threads (null to give each of them a dedicated thread).
+     */
+    public final Executor executor;
+
+    /**
+     * The game's metrics (see GameMetrics).
+     */
+    public final GameMetrics metrics;
+
+    /**
+     * The players' scores (see Scoreboard).
+     */
+    public final Scoreboard scoreboard;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, config.virtualClock ? new VirtualClock() : new SystemClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock) {
+        this(logger, config, ui, util, clock, null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, Executor executor) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.clock = clock;
+        this.executor = executor;
+        this.metrics = new GameMetrics(config.players, config.tableProfiling);
+        this.scoreboard = new Scoreboard(config.players);
+        metrics.leaders(() -> scoreboard.top(config.leaderboardSize));
     }
 }
@@ -0,0 +1,324 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact binary log of the game events, used as a user interface decorator (every table change goes through
+ * the user interface). Each event is a fixed size record written through a FileChannel buffer. When a file
+ * reaches its maximum size it is closed (and optionally compressed in the background) and a new one is started.
+ * The game threads (often inside a table operation) only hand the records to a writer thread through a bounded
+ * queue, so the disk writes, rotations and compressions are off their path. A record that finds the queue full is
+ * dropped (and counted, see close) instead of blocking the game.
+ * Use EventLogDecoder to print the files as text.
+ */
+public class EventLog implements UserInterface {
+
+    /**
+     * The file header: magic, version and record size.
+     */
+    static final int MAGIC = 0x53455445; // "SETE"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * Record layout: type (1 byte) + padding (3 bytes), player, slot, card (or value) and nanoTime.
+     */
+    static final int RECORD_SIZE = 24;
+
+    /**
+     * The event types.
+     */
+    static final byte PLACE_CARD = 1;
+    static final byte REMOVE_CARD = 2;
+    static final byte PLACE_TOKEN = 3;
+    static final byte REMOVE_TOKEN = 4;
+    static final byte REMOVE_TOKENS = 5;
+    static final byte SCORE = 6;
+    static final byte FREEZE = 7;
+    static final byte WINNER = 8;
+    static final byte PLACE_TOKENS = 9; // one record per slot, with the number of slots as the value (-1 slot if none)
+
+    static final String[] TYPE_NAMES = {"?", "PLACE_CARD", "REMOVE_CARD", "PLACE_TOKEN", "REMOVE_TOKEN",
+            "REMOVE_TOKENS", "SCORE", "FREEZE", "WINNER", "PLACE_TOKENS"};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of records that can wait for the writer thread.
+     */
+    static final int QUEUE_CAPACITY = 16 * 1024;
+
+    /**
+     * An event waiting for the writer thread.
+     */
+    private static class Record {
+        final byte type;
+        final int player;
+        final int slot;
+        final int card;
+        final long nanos;
+
+        Record(byte type, int player, int slot, int card) {
+            this.type = type;
+            this.player = player;
+            this.slot = slot;
+            this.card = card;
+            this.nanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Tells the writer thread to write the buffered records and close the file (compared by identity).
+     */
+    private static final Record END = new Record((byte) 0, 0, 0, 0);
+
+    private final Logger logger;
+    private final UserInterface ui;
+    private final String prefix;
+    private final long maxFileSize;
+    private final boolean compress;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+    private final BlockingQueue<Record> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    /**
+     * The current file (only used by the writer thread once it started).
+     */
+    private FileChannel channel;
+    private Path file;
+    private long fileSize;
+    private int fileIndex;
+
+    /**
+     * True iff the log no longer takes records (closed, or failed to write).
+     */
+    private volatile boolean closed;
+
+    /**
+     * Closes the log if the process exits first (removed when the log is closed).
+     */
+    private final Thread closer = new Thread(this::close, "event-log-closer");
+
+    /**
+     * @param logger      - the logger for I/O errors.
+     * @param ui          - the user interface to forward the calls to (may be null).
+     * @param prefix      - the path prefix of the log files (an index and extension are appended).
+     * @param maxFileSize - the size in bytes from which a new file is started.
+     * @param compress    - whether to gzip the full files.
+     */
+    public EventLog(Logger logger, UserInterface ui, String prefix, long maxFileSize, boolean compress) {
+        this.logger = logger;
+        this.ui = ui;
+        this.prefix = prefix;
+        this.maxFileSize = Math.max(maxFileSize, HEADER_SIZE + RECORD_SIZE);
+        this.compress = compress;
+        try {
+            openFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        writer = new Thread(this::write, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(closer);
+    }
+
+    // The main loop of the writer thread: writes the records, and the buffer whenever it has nothing else to do
+    private void write() {
+        try {
+            for (Record record = records.take(); record != END; record = records.take()) {
+                write(record);
+                if (records.isEmpty()) writeBuffer();
+            }
+            writeBuffer();
+            channel.close();
+        } catch (IOException e) {
+            logger.severe("cannot write event log " + file + ": " + e.getMessage());
+            closed = true;
+            records.clear();
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void write(Record record) throws IOException {
+        if (fileSize + RECORD_SIZE > maxFileSize) rotate();
+        if (buffer.remaining() < RECORD_SIZE) writeBuffer();
+        buffer.put(record.type).put((byte) 0).putShort((short) 0)
+                .putInt(record.player).putInt(record.slot).putInt(record.card).putLong(record.nanos);
+        fileSize += RECORD_SIZE;
+    }
+
+    private void openFile() throws IOException {
+        file = Paths.get(prefix + "-" + fileIndex++ + ".bin");
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+        fileSize = HEADER_SIZE;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        writeBuffer();
+        channel.close();
+        if (compress) {
+            Path full = file;
+            Thread compressor = new Thread(() -> compress(full), "event-log-compressor");
+            compressor.setDaemon(true);
+            compressor.start();
+        }
+        openFile();
+    }
+
+    private void compress(Path path) {
+        Path target = Paths.get(path + ".gz");
+        try (InputStream in = Files.newInputStream(path);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            for (int read; (read = in.read(bytes)) > 0; )
+                out.write(bytes, 0, read);
+        } catch (IOException e) {
+            logger.severe("cannot compress event log " + path + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            logger.severe("cannot delete event log " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hands an event record to the writer thread (never blocks).
+     */
+    private void append(byte type, int player, int slot, int card) {
+        if (closed) return;
+        if (!records.offer(new Record(type, player, slot, card)))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * @return - the number of records dropped because the writer thread fell behind.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits for the writer thread to write the queued records, and closes the current file.
+     */
+    public synchronized void close() {
+        if (Thread.currentThread() != closer) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(closer);
+            } catch (IllegalStateException ignored) {} // the process is already exiting
+        }
+        if (closed && !writer.isAlive()) return;
+        closed = true;
+        try {
+            records.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0)
+            logger.warning("the event log dropped " + dropped.get() + " records, its writer fell behind the game");
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        append(PLACE_CARD, -1, slot, card);
+        if (ui != null) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        append(REMOVE_CARD, -1, slot, -1);
+        if (ui != null) ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        append(PLACE_TOKEN, player, slot, -1);
+        if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        append(REMOVE_TOKENS, -1, -1, -1);
+        if (ui != null) ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        append(REMOVE_TOKENS, -1, slot, -1);
+        if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        append(REMOVE_TOKEN, player, slot, -1);
+        if (ui != null) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void placeTokens(int player, int[] slots) {
+        if (slots.length == 0) append(PLACE_TOKENS, player, -1, 0);
+        for (int slot : slots)
+            append(PLACE_TOKENS, player, slot, slots.length);
+        if (ui != null) ui.placeTokens(player, slots);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        append(FREEZE, player, -1, (int) millies);
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        append(SCORE, player, -1, score);
+        if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        for (int player : players)
+            append(WINNER, player, -1, -1);
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        close();
+        if (ui != null) ui.dispose();
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Prints binary event log files (see EventLog) as text, one event per line.
+ * A file that ends in a partial record (e.g. the game crashed while writing it) is printed up to its last whole
+ * record.
+ * Usage: EventLogDecoder file... (.bin or .bin.gz files)
+ */
+public class EventLogDecoder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: EventLogDecoder <event log file>...");
+            System.exit(1);
+        }
+        for (String filename : args) {
+            InputStream is = Files.newInputStream(Paths.get(filename));
+            if (filename.endsWith(".gz")) is = new GZIPInputStream(is);
+            try (InputStream in = is) {
+                if (decode(in, filename, System.out) < 0)
+                    System.err.println(filename + ": the last record is incomplete and was skipped");
+            }
+        }
+    }
+
+    /**
+     * Prints the events of an event log file.
+     *
+     * @param name - the name of the file (for the error messages).
+     * @return - the number of events printed, negated (and minus one) if the file ends in a partial record.
+     * @throws IOException - if the file is not an event log file, or cannot be read.
+     */
+    static int decode(InputStream is, String name, PrintStream out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        byte[] header = new byte[EventLog.HEADER_SIZE];
+        int headerRead = read(in, header);
+        // an empty file was created just before the game stopped
+        if (headerRead == 0) return 0;
+        ByteBuffer fields = ByteBuffer.wrap(header).order(ByteOrder.BIG_ENDIAN);
+        if (headerRead < header.length || fields.getInt() != EventLog.MAGIC)
+            throw new IOException(name + " is not an event log file");
+        short version = fields.getShort();
+        int recordSize = fields.getShort();
+        if (version != EventLog.VERSION || recordSize != EventLog.RECORD_SIZE)
+            throw new IOException(name + " has an unsupported version (" + version + ")");
+
+        byte[] record = new byte[EventLog.RECORD_SIZE];
+        StringBuilder line = new StringBuilder();
+        int events = 0;
+        while (true) {
+            int read = read(in, record);
+            if (read == 0) return events;
+            if (read < record.length) return -events - 1;
+            fields = ByteBuffer.wrap(record).order(ByteOrder.BIG_ENDIAN);
+            int type = fields.get();
+            fields.position(4);
+            int player = fields.getInt();
+            int slot = fields.getInt();
+            int card = fields.getInt();
+            long nanoTime = fields.getLong();
+            line.setLength(0);
+            line.append(nanoTime).append(' ')
+                    .append(type > 0 && type < EventLog.TYPE_NAMES.length ? EventLog.TYPE_NAMES[type] : "UNKNOWN");
+            if (player >= 0) line.append(" player=").append(player + 1);
+            if (slot >= 0) line.append(" slot=").append(slot);
+            if (type == EventLog.PLACE_CARD) line.append(" card=").append(card);
+            else if (type == EventLog.SCORE || type == EventLog.FREEZE) line.append(" value=").append(card);
+            out.println(line);
+            events++;
+        }
+    }
+
+    /**
+     * Reads as many bytes as are left, up to the size of the array.
+     *
+     * @return - the number of bytes read (less than the size of the array only at the end of the file).
+     */
+    private static int read(DataInputStream in, byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int count = in.read(bytes, read, bytes.length - read);
+            if (count < 0) break;
+            read += count;
+        }
+        return read;
+    }
+}
@@ -0,0 +1,412 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Counters of a running game, exposed over JMX (see GameMetricsMBean).
+ * The counters are striped adders, so updating them from the game threads takes no locks and they can be always on.
+ * The queue sizes and the players' input counters are gauges: the dealer and the players register a supplier that is
+ * only called when the metrics are read.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+    /**
+     * The request time to pass to tableAcquired when the monitor is already held by the thread (reentrant
+     * acquisitions are not counted).
+     */
+    public static final long REENTRANT = Long.MIN_VALUE;
+
+    /**
+     * The stages of a claim, each measured from the claim's last key press (or from the claimSet call): the tokens
+     * are on the table, the dealer was notified, the dealer started checking the set, the player was notified of
+     * the ruling.
+     */
+    public static final int TO_TOKEN = 0;
+    public static final int TO_NOTIFY = 1;
+    public static final int TO_CHECK = 2;
+    public static final int TO_RULING = 3;
+    private static final String[] STAGE_NAMES = {"token", "notify", "check", "ruling"};
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder points = new LongAdder();
+    private final LongAdder penalties = new LongAdder();
+    private final LongAdder staleClaims = new LongAdder();
+    private final LongAdder reshuffles = new LongAdder();
+
+    private final LongAdder dealerIterations = new LongAdder();
+    private final LongAdder dealerIterationNanos = new LongAdder();
+    private final LongAccumulator dealerIterationMaxNanos = new LongAccumulator(Long::max, 0);
+
+    private final LongAdder tableAcquisitions = new LongAdder();
+    private final LongAdder tableWaitNanos = new LongAdder();
+    private final LongAdder tableHoldNanos = new LongAdder();
+    private final LongAccumulator tableHoldMaxNanos = new LongAccumulator(Long::max, 0);
+
+    private final LongAdder[] freezeMillis;
+    private final LongAdder[] playerPenalties;
+    private final LongAdder[] playerClaims;
+    private final LongAdder[] playerClaimNanos;
+
+    private final LatencyHistogram[] claimLatencies = new LatencyHistogram[STAGE_NAMES.length];
+
+    private volatile IntSupplier claimQueueDepth = () -> 0;
+    private final AtomicReferenceArray<IntSupplier> pendingInputs;
+    private final AtomicReferenceArray<LongSupplier> droppedInputs;
+    private final AtomicReferenceArray<LongSupplier> coalescedInputs;
+    private volatile Supplier<int[]> leaders = () -> new int[0];
+
+    /**
+     * Profiles the table's monitor per thread and method (null unless the table is profiled).
+     */
+    private final TableProfiler tableProfiler;
+
+    private ObjectName name;
+
+    /**
+     * @param players - the number of players in the game.
+     */
+    public GameMetrics(int players) {
+        this(players, false);
+    }
+
+    /**
+     * @param players      - the number of players in the game.
+     * @param profileTable - true iff the table's monitor is profiled per thread and method (see tableContentionReport).
+     */
+    public GameMetrics(int players, boolean profileTable) {
+        tableProfiler = profileTable ? new TableProfiler() : null;
+        freezeMillis = new LongAdder[players];
+        playerPenalties = new LongAdder[players];
+        playerClaims = new LongAdder[players];
+        playerClaimNanos = new LongAdder[players];
+        for (int i = 0; i < players; i++) {
+            freezeMillis[i] = new LongAdder();
+            playerPenalties[i] = new LongAdder();
+            playerClaims[i] = new LongAdder();
+            playerClaimNanos[i] = new LongAdder();
+        }
+        pendingInputs = new AtomicReferenceArray<>(players);
+        droppedInputs = new AtomicReferenceArray<>(players);
+        coalescedInputs = new AtomicReferenceArray<>(players);
+        for (int i = 0; i < claimLatencies.length; i++)
+            claimLatencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name - the object name, e.g. "bguspl.set:type=GameMetrics".
+     */
+    public synchronized void register(Logger logger, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException e) {
+            logger.severe("cannot register the game metrics as " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server (if they were registered).
+     */
+    public synchronized void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ignored) {}
+        name = null;
+    }
+
+    // Recording (called by the game threads)
+
+    public void claimQueue(IntSupplier depth) {
+        claimQueueDepth = depth;
+    }
+
+    public void pendingInputs(int player, IntSupplier pending) {
+        pendingInputs.set(player, pending);
+    }
+
+    /**
+     * Registers the counters of a player's input buffer (see InputOverflowPolicy).
+     *
+     * @param dropped   - the number of key presses lost because the buffer was full.
+     * @param coalesced - the number of key presses cancelled out by another press of the same slot.
+     */
+    public void inputCounters(int player, LongSupplier dropped, LongSupplier coalesced) {
+        droppedInputs.set(player, dropped);
+        coalescedInputs.set(player, coalesced);
+    }
+
+    public void leaders(Supplier<int[]> top) {
+        leaders = top;
+    }
+
+    public void point() {
+        points.increment();
+    }
+
+    public void penalty(int player) {
+        penalties.increment();
+        playerPenalties[player].increment();
+    }
+
+    public void staleClaim() {
+        staleClaims.increment();
+    }
+
+    public void reshuffle() {
+        reshuffles.increment();
+    }
+
+    public void frozen(int player, long millis) {
+        freezeMillis[player].add(millis);
+    }
+
+    /**
+     * Records the time from the start of a claim to one of its stages.
+     *
+     * @param stage      - TO_TOKEN, TO_NOTIFY, TO_CHECK or TO_RULING.
+     * @param claimNanos - the System.nanoTime() of the claim's start (0 if unknown, then nothing is recorded).
+     */
+    public void claimStage(int stage, long claimNanos) {
+        if (claimNanos != 0) claimLatencies[stage].record(System.nanoTime() - claimNanos);
+    }
+
+    /**
+     * Records that a player's claim was ruled, and the time from its start to the ruling.
+     *
+     * @param claimNanos - the System.nanoTime() of the claim's start (0 if unknown, then only the claim is counted).
+     */
+    public void claimRuled(int player, long claimNanos) {
+        playerClaims[player].increment();
+        if (claimNanos != 0) playerClaimNanos[player].add(System.nanoTime() - claimNanos);
+    }
+
+    /**
+     * @return - the claim latency histograms, one line per stage.
+     */
+    public String claimLatencyReport() {
+        StringBuilder report = new StringBuilder("claim latencies:");
+        for (int i = 0; i < claimLatencies.length; i++)
+            report.append(System.lineSeparator()).append("  to ").append(STAGE_NAMES[i]).append(": ").append(claimLatencies[i]);
+        return report.toString();
+    }
+
+    public void dealerIteration(long nanos) {
+        dealerIterations.increment();
+        dealerIterationNanos.add(nanos);
+        dealerIterationMaxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Called right after the table's monitor is acquired.
+     *
+     * @param method         - the name of the method that acquired the monitor (for the table profile).
+     * @param requestedNanos - the System.nanoTime() before the monitor was requested (or REENTRANT).
+     * @return - the time the monitor was acquired, to pass to tableReleased.
+     */
+    public long tableAcquired(String method, long requestedNanos) {
+        if (requestedNanos == REENTRANT) return REENTRANT;
+        long now = System.nanoTime();
+        tableAcquisitions.increment();
+        tableWaitNanos.add(now - requestedNanos);
+        if (tableProfiler != null) tableProfiler.acquired(method, now - requestedNanos);
+        return now;
+    }
+
+    /**
+     * Called right before the table's monitor is released.
+     *
+     * @param acquiredNanos - the value returned by tableAcquired.
+     */
+    public void tableReleased(long acquiredNanos) {
+        if (acquiredNanos == REENTRANT) return;
+        long held = System.nanoTime() - acquiredNanos;
+        tableHoldNanos.add(held);
+        tableHoldMaxNanos.accumulate(held);
+        if (tableProfiler != null) tableProfiler.released(held);
+    }
+
+    /**
+     * @return - the contention on the table's monitor per thread and method, or null if the table is not profiled.
+     */
+    public String tableContentionReport() {
+        return tableProfiler == null ? null : tableProfiler.report();
+    }
+
+    // Reading
+
+    private double perSecond(LongAdder counter) {
+        return counter.sum() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public int getClaimQueueDepth() {
+        return claimQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getPoints() {
+        return points.sum();
+    }
+
+    @Override
+    public long getPenalties() {
+        return penalties.sum();
+    }
+
+    @Override
+    public long getStaleClaims() {
+        return staleClaims.sum();
+    }
+
+    @Override
+    public double getPointsPerSecond() {
+        return perSecond(points);
+    }
+
+    @Override
+    public double getPenaltiesPerSecond() {
+        return perSecond(penalties);
+    }
+
+    @Override
+    public double getStaleClaimsPerSecond() {
+        return perSecond(staleClaims);
+    }
+
+    @Override
+    public long getDealerIterations() {
+        return dealerIterations.sum();
+    }
+
+    @Override
+    public long getDealerIterationAverageNanos() {
+        return dealerIterationNanos.sum() / Math.max(1, dealerIterations.sum());
+    }
+
+    @Override
+    public long getDealerIterationMaxNanos() {
+        return dealerIterationMaxNanos.get();
+    }
+
+    @Override
+    public long getTableAcquisitions() {
+        return tableAcquisitions.sum();
+    }
+
+    @Override
+    public long getTableWaitNanos() {
+        return tableWaitNanos.sum();
+    }
+
+    @Override
+    public long getTableHoldNanos() {
+        return tableHoldNanos.sum();
+    }
+
+    @Override
+    public long getTableHoldMaxNanos() {
+        return tableHoldMaxNanos.get();
+    }
+
+    @Override
+    public long[] getPlayerFreezeMillis() {
+        return sums(freezeMillis);
+    }
+
+    @Override
+    public long[] getPlayerPenalties() {
+        return sums(playerPenalties);
+    }
+
+    @Override
+    public long[] getPlayerClaims() {
+        return sums(playerClaims);
+    }
+
+    @Override
+    public long[] getPlayerClaimNanos() {
+        return sums(playerClaimNanos);
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < sums.length; i++)
+            sums[i] = adders[i].sum();
+        return sums;
+    }
+
+    @Override
+    public int[] getPlayerPendingInputs() {
+        int[] pending = new int[pendingInputs.length()];
+        for (int i = 0; i < pending.length; i++) {
+            IntSupplier supplier = pendingInputs.get(i);
+            pending[i] = supplier == null ? 0 : supplier.getAsInt();
+        }
+        return pending;
+    }
+
+    @Override
+    public long[] getPlayerDroppedInputs() {
+        return values(droppedInputs);
+    }
+
+    @Override
+    public long[] getPlayerCoalescedInputs() {
+        return values(coalescedInputs);
+    }
+
+    private static long[] values(AtomicReferenceArray<LongSupplier> suppliers) {
+        long[] values = new long[suppliers.length()];
+        for (int i = 0; i < values.length; i++) {
+            LongSupplier supplier = suppliers.get(i);
+            values[i] = supplier == null ? 0 : supplier.getAsLong();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] getLeaders() {
+        return leaders.get();
+    }
+
+    @Override
+    public long[] getClaimLatencyToTokenNanos() {
+        return claimLatencies[TO_TOKEN].summary();
+    }
+
+    @Override
+    public long[] getClaimLatencyToNotifyNanos() {
+        return claimLatencies[TO_NOTIFY].summary();
+    }
+
+    @Override
+    public long[] getClaimLatencyToCheckNanos() {
+        return claimLatencies[TO_CHECK].summary();
+    }
+
+    @Override
+    public long[] getClaimLatencyToRulingNanos() {
+        return claimLatencies[TO_RULING].summary();
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffles.sum();
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set;
+
+/**
+ * The JMX management interface of GameMetrics. Times are in nanoseconds unless stated otherwise.
+ * The claim latencies are {count, p50, p99, p999, max} of the time from a claim's last key press to each stage.
+ * The player claims are the claims ruled, and the player claim nanos their total time from the start to the ruling.
+ * The dropped inputs are the key presses a player's input buffer lost because it was full, and the coalesced inputs
+ * the presses cancelled out by another press of the same slot (see InputOverflowPolicy).
+ * The leaders are the ids of the players with the highest scores, the highest first (see LeaderboardSize).
+ */
+public interface GameMetricsMBean {
+
+    int getClaimQueueDepth();
+
+    long getPoints();
+
+    long getPenalties();
+
+    long getStaleClaims();
+
+    double getPointsPerSecond();
+
+    double getPenaltiesPerSecond();
+
+    double getStaleClaimsPerSecond();
+
+    long getDealerIterations();
+
+    long getDealerIterationAverageNanos();
+
+    long getDealerIterationMaxNanos();
+
+    long getTableAcquisitions();
+
+    long getTableWaitNanos();
+
+    long getTableHoldNanos();
+
+    long getTableHoldMaxNanos();
+
+    long[] getPlayerFreezeMillis();
+
+    long[] getPlayerPenalties();
+
+    long[] getPlayerClaims();
+
+    long[] getPlayerClaimNanos();
+
+    int[] getPlayerPendingInputs();
+
+    long[] getPlayerDroppedInputs();
+
+    long[] getPlayerCoalescedInputs();
+
+    int[] getLeaders();
+
+    long[] getClaimLatencyToTokenNanos();
+
+    long[] getClaimLatencyToNotifyNanos();
+
+    long[] getClaimLatencyToCheckNanos();
+
+    long[] getClaimLatencyToRulingNanos();
+
+    long getReshuffles();
+}
@@ -5,6 +5,7 @@ import bguspl.set.ex.Player;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.Arrays;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -39,11 +40,12 @@ class InputManager extends KeyAdapter {
 
     @Override
     public void keyPressed(KeyEvent e) {
-        // dispatch the key event to the player according to the key map
+        // dispatch the key event to the player according to the key map (never blocks the event dispatch thread)
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
+            if (logger.isLoggable(Level.FINE))
+                logger.fine("key " + keyCode + " was pressed by player " + (player + 1));
             players[player].keyPressed(keyToSlot[keyCode]);
         }
     }
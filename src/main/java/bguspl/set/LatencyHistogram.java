@@ -0,0 +1,97 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with logarithmic buckets: every power of 2 is split into 4
+ * sub-buckets, so a percentile is reported with an error of at most 25% (and the maximum is exact).
+ * Recording is a single atomic increment, so any number of threads can record concurrently.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Records a duration (negative durations are recorded as 0).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucket(nanos));
+        max.accumulate(nanos);
+    }
+
+    // The bucket of a value: the position of its highest bit, and the next SUB_BUCKET_BITS bits
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // The largest value in a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        if (exponent >= 62) return Long.MAX_VALUE;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @return - the number of recorded durations.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++)
+            count += buckets.get(i);
+        return count;
+    }
+
+    /**
+     * @param percentile - between 0 and 100.
+     * @return - the duration that the given percentage of the recorded durations do not exceed (0 if none).
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++)
+            count += counts[i] = buckets.get(i);
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        for (int i = 0; i < counts.length; i++) {
+            rank -= counts[i];
+            if (rank <= 0) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * @return - the longest recorded duration.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return - the count, the 50th, 99th and 99.9th percentiles and the maximum, in this order.
+     */
+    public long[] summary() {
+        return new long[]{count(), percentile(50), percentile(99), percentile(99.9), max()};
+    }
+
+    @Override
+    public String toString() {
+        long[] summary = summary();
+        return "count " + summary[0] + ", p50 " + micros(summary[1]) + ", p99 " + micros(summary[2])
+                + ", p999 " + micros(summary[3]) + ", max " + micros(summary[4]);
+    }
+
+    private static String micros(long nanos) {
+        return nanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,29 @@
+package bguspl.set;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log record whose message is only built when it is first read (e.g. by the formatter on the log writer thread).
+ */
+public class LazyLogRecord extends LogRecord {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient Supplier<String> supplier;
+
+    public LazyLogRecord(Level level, Supplier<String> supplier) {
+        super(level, null);
+        this.supplier = supplier;
+    }
+
+    @Override
+    public synchronized String getMessage() {
+        if (supplier != null) {
+            setMessage(supplier.get());
+            supplier = null;
+        }
+        return super.getMessage();
+    }
+}
@@ -1,6 +1,7 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameRecorder;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
@@ -55,15 +56,43 @@ public class Main {
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        // with the binary event log, the user interface calls are not logged as text too
+        ui = new UserInterfaceDecorator(logger, util, ui, !config.eventLog);
+        SpectatorStream stream = null;
+        if (config.networkPort >= 0) {
+            stream = new SpectatorStream(config, ui);
+            ui = stream;
+        }
+        if (config.eventLog)
+            ui = new EventLog(logger, ui, "./logs/" + timestamp() + "-events", config.eventLogFileBytes, config.eventLogCompress);
 
         Env env = new Env(logger, config, ui, util);
+        if (config.metrics) env.metrics.register(logger, "bguspl.set:type=GameMetrics");
 
         // create the game entities
         Table table = new Table(env);
         dealer = new Dealer(env, table, players);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        if (!config.recordFile.isEmpty()) try {
+            dealer.setRecorder(new GameRecorder(logger, config, config.recordFile));
+        } catch (IOException e) {
+            logger.severe("cannot record the game to " + config.recordFile + ": " + e.getMessage());
+        }
+        PlayerStatsStore stats = null;
+        if (!config.playerStatsFile.isEmpty()) try {
+            stats = PlayerStatsStore.open(config.playerStatsFile, logger);
+            dealer.setStats(stats);
+        } catch (IOException e) {
+            logger.severe("cannot open the player statistics " + config.playerStatsFile + ": " + e.getMessage());
+        }
+        // the gateway only listens once all the players it hands the clients' inputs to exist
+        NetworkGateway gateway = null;
+        if (stream != null) try {
+            gateway = new NetworkGateway(logger, config, players, stream, config.networkPort);
+        } catch (IOException e) {
+            logger.severe("cannot start the network gateway: " + e.getMessage());
+        }
 
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
@@ -72,26 +101,38 @@ public class Main {
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (!xButtonPressed && config.endGamePauseMillies > 0) env.clock.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            if (gateway != null) gateway.close();
+            if (stats != null) closeStats(stats);
             if (!xButtonPressed) env.ui.dispose();
-            for (Handler h : logger.getHandlers()) h.flush();
+            // closing an asynchronous handler drains it and reports the records it dropped
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    // Closes the career statistics, waiting for their compaction (on a daemon thread) to finish before the process ends
+    private static void closeStats(PlayerStatsStore stats) {
+        try {
+            stats.close();
+        } catch (IOException e) {
+            logger.severe("cannot close the player statistics: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     private static Logger initLogger() {
 
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
         FileHandler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new FileHandler("./logs/" + timestamp() + ".log");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -104,6 +145,20 @@ public class Main {
         return logger;
     }
 
+    private static String timestamp() {
+        //just to make our log file nicer :)
+        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
+        return format.format(Calendar.getInstance().getTime());
+    }
+
+    public static void setLoggerAsync(Logger logger, int bufferSize) {
+        for (Handler h : logger.getHandlers()) {
+            if (h instanceof AsyncHandler) continue;
+            logger.removeHandler(h);
+            logger.addHandler(new AsyncHandler(h, bufferSize));
+        }
+    }
+
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
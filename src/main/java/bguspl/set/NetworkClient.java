@@ -0,0 +1,83 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A simple (blocking) client of the NetworkGateway, e.g. for remote bots and for testing over the loopback.
+ * Usage: NetworkClient host port player|spectate - joins as the given player (or spectates) and prints the frames it
+ * gets.
+ */
+public class NetworkClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocate(NetworkGateway.FRAME_SIZE);
+    private final ByteBuffer input = ByteBuffer.allocate(NetworkGateway.FRAME_SIZE);
+
+    public NetworkClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    private synchronized void send(int type, int a, int b, int c) throws IOException {
+        output.clear();
+        output.putInt(type).putInt(a).putInt(b).putInt(c).flip();
+        while (output.hasRemaining())
+            channel.write(output);
+    }
+
+    public void join(int player) throws IOException {
+        send(NetworkGateway.JOIN, player, 0, 0);
+    }
+
+    public void spectate() throws IOException {
+        send(NetworkGateway.SPECTATE, 0, 0, 0);
+    }
+
+    public void keyPressed(int slot) throws IOException {
+        send(NetworkGateway.KEY, slot, 0, 0);
+    }
+
+    /**
+     * Claims a whole selection (for tables of up to 64 slots).
+     */
+    public void claim(int[] slots) throws IOException {
+        long mask = 0;
+        for (int slot : slots)
+            mask |= 1L << slot;
+        send(NetworkGateway.CLAIM, (int) mask, (int) (mask >>> 32), 0);
+    }
+
+    /**
+     * Waits for the next frame from the server.
+     *
+     * @return - the frame's type, a, b and c (null if the server closed the connection).
+     */
+    public int[] receive() throws IOException {
+        input.clear();
+        while (input.hasRemaining())
+            if (channel.read(input) < 0) return null;
+        input.flip();
+        return new int[]{input.getInt(), input.getInt(), input.getInt(), input.getInt()};
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: NetworkClient <host> <port> <player|spectate>");
+            System.exit(1);
+        }
+        try (NetworkClient client = new NetworkClient(args[0], Integer.parseInt(args[1]))) {
+            if (args[2].equals("spectate")) client.spectate();
+            else client.join(Integer.parseInt(args[2]) - 1);
+            for (int[] frame; (frame = client.receive()) != null; )
+                System.out.println(frame[0] + " " + frame[1] + " " + frame[2] + " " + frame[3]);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking network server that lets remote clients play as the (human) players of the game, or watch it.
+ * A single I/O thread serves all the connections with a selector. The joined clients and the spectators subscribe
+ * to a SpectatorStream, so they get the state of the table as a snapshot followed by deltas.
+ *
+ * All messages are fixed size frames of 4 big-endian ints: type, a, b, c.
+ * Client to server:
+ *   JOIN player            - play as the given player (a human player no other client plays as).
+ *   KEY slot               - a key press.
+ *   CLAIM maskLow maskHigh - a whole selection, as a bitmask of slots (for tables of up to 64 slots).
+ *   SPECTATE               - watch the game without playing.
+ * Server to client:
+ *   JOINED player rows columns, REJECTED player
+ *   CARD_PLACED slot card, CARD_REMOVED slot, TOKEN_PLACED player slot, TOKEN_REMOVED player slot,
+ *   TOKENS_REMOVED slot (-1 for all the slots), SCORE player score, FREEZE player millis, WINNER player,
+ *   CLAIM_REJECTED player (a previous claim is still pending), SNAPSHOT rows columns players (the start of the
+ *   whole state, see SpectatorStream), COUNTDOWN millis warn.
+ * A client that falls behind the game gets a new snapshot, and is disconnected if it keeps falling behind.
+ */
+public class NetworkGateway {
+
+    public static final int FRAME_SIZE = 16;
+
+    public static final int JOIN = 1;
+    public static final int KEY = 2;
+    public static final int CLAIM = 3;
+    public static final int SPECTATE = 4;
+
+    public static final int JOINED = 101;
+    public static final int REJECTED = 102;
+    public static final int CARD_PLACED = 103;
+    public static final int CARD_REMOVED = 104;
+    public static final int TOKEN_PLACED = 105;
+    public static final int TOKEN_REMOVED = 106;
+    public static final int TOKENS_REMOVED = 107;
+    public static final int SCORE = 108;
+    public static final int FREEZE = 109;
+    public static final int WINNER = 110;
+    public static final int CLAIM_REJECTED = 111;
+    public static final int SNAPSHOT = 112;
+    public static final int COUNTDOWN = 113;
+
+    /**
+     * The maximum number of replies waiting to be sent to a client before it is disconnected.
+     */
+    private static final int MAX_PENDING_FRAMES = 4096;
+
+    /**
+     * A client connection.
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer input = ByteBuffer.allocate(FRAME_SIZE * 64);
+        final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean closing;
+        int player = -1;
+
+        /**
+         * The connection's view of the game (null until it joins or spectates), and the frames being sent from it.
+         */
+        SpectatorStream.Subscription subscription;
+        ByteBuffer frames;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private final SpectatorStream stream;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread ioThread;
+    private volatile boolean running = true;
+
+    /**
+     * The connections of the joined players.
+     */
+    private final Set<Connection> joined = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The connections with frames to send, waiting for the I/O thread to register their write interest.
+     */
+    private final Queue<Connection> toSchedule = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    /**
+     * Starts listening (the players must already exist, the clients' inputs are handed to them from then on).
+     *
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param players - the players (remote clients play as the human players).
+     * @param stream  - the stream of the game's state the clients subscribe to.
+     * @param port    - the port to listen on (0 for any free port).
+     */
+    public NetworkGateway(Logger logger, Config config, Player[] players, SpectatorStream stream, int port) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        this.stream = stream;
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        ioThread = new Thread(this::serve, "network-gateway");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        logger.info("network gateway listening on port " + port());
+    }
+
+    /**
+     * @return - the port the gateway listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    static ByteBuffer encode(int type, int a, int b, int c) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        frame.putInt(type).putInt(a).putInt(b).putInt(c).flip();
+        return frame;
+    }
+
+    // The main loop of the I/O thread
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                wakeUpPending.set(false);
+                registerWrites();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) read(connection);
+                            if (key.isValid() && key.isWritable()) write(connection, key);
+                        } catch (IOException e) {
+                            close(connection);
+                        } catch (RuntimeException e) {
+                            // a failed frame only costs its own connection, the I/O thread serves the others
+                            logger.severe("network gateway: closing a connection after an error: " + e);
+                            close(connection);
+                        }
+                    }
+                }
+                registerWrites(); // frames queued by the I/O thread itself (e.g. replies)
+            } catch (IOException e) {
+                logger.severe("network gateway error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Registers the write interest of the connections with frames to send
+    private void registerWrites() {
+        for (Connection connection; (connection = toSchedule.poll()) != null; ) {
+            connection.scheduled.set(false);
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (connection.closing) close(connection);
+            else if (key != null && key.isValid())
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.input) < 0) {
+            close(connection);
+            return;
+        }
+        ByteBuffer input = connection.input;
+        input.flip();
+        while (input.remaining() >= FRAME_SIZE)
+            handle(connection, input.getInt(), input.getInt(), input.getInt(), input.getInt());
+        input.compact();
+    }
+
+    private void handle(Connection connection, int type, int a, int b, int c) {
+        int player = connection.player;
+        switch (type) {
+            case JOIN:
+                join(connection, a);
+                break;
+            case SPECTATE:
+                if (connection.subscription == null) subscribe(connection);
+                break;
+            case KEY:
+                if (player >= 0 && a >= 0 && a < config.tableSize) players[player].keyPressed(a);
+                break;
+            case CLAIM:
+                if (player < 0) break;
+                long mask = ((long) b << 32) | (a & 0xFFFFFFFFL);
+                if (Long.bitCount(mask) != config.featureSize) break;
+                int[] slots = new int[config.featureSize];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                }
+                if (!players[player].offerClaim(slots)) send(connection, encode(CLAIM_REJECTED, player, 0, 0));
+                break;
+            default:
+                logger.warning("network gateway: unknown frame type " + type);
+        }
+    }
+
+    private void join(Connection connection, int player) {
+        boolean taken = joined.stream().anyMatch(other -> other.player == player);
+        if (connection.player >= 0 || player < 0 || player >= players.length || !players[player].isHuman() || taken) {
+            send(connection, encode(REJECTED, player, 0, 0));
+            return;
+        }
+        connection.player = player;
+        joined.add(connection);
+        send(connection, encode(JOINED, player, config.rows, config.columns));
+        if (connection.subscription == null) subscribe(connection);
+        logger.info("network gateway: a client joined as player " + (player + 1));
+    }
+
+    private void subscribe(Connection connection) {
+        connection.subscription = stream.subscribe(config.spectatorQueueFrames, () -> schedule(connection));
+        schedule(connection); // for the snapshot
+    }
+
+    private void write(Connection connection, SelectionKey key) throws IOException {
+        for (ByteBuffer frame; (frame = connection.output.peek()) != null; ) {
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) return; // the socket buffer is full, wait for the next write readiness
+            connection.output.poll();
+            connection.pending.decrementAndGet();
+        }
+        SpectatorStream.Subscription subscription = connection.subscription;
+        if (subscription != null) {
+            while (connection.frames != null || (connection.frames = subscription.poll()) != null) {
+                connection.channel.write(connection.frames);
+                if (connection.frames.hasRemaining()) return;
+                connection.frames = null;
+            }
+            if (subscription.isClosed()) {
+                logger.warning("network gateway: a client fell behind the game and was disconnected");
+                close(connection);
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        // frames were added after the loops ended
+        if (!connection.output.isEmpty() || subscription != null && subscription.hasNext()) schedule(connection);
+    }
+
+    private void close(Connection connection) {
+        joined.remove(connection);
+        if (connection.subscription != null) connection.subscription.close();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {}
+        if (connection.player >= 0)
+            logger.info("network gateway: the client of player " + (connection.player + 1) + " left");
+    }
+
+    /**
+     * Queues a frame to a connection and makes sure the I/O thread will send it.
+     */
+    private void send(Connection connection, ByteBuffer frame) {
+        if (connection.pending.incrementAndGet() > MAX_PENDING_FRAMES) {
+            connection.closing = true; // too slow, disconnect it
+        } else {
+            connection.output.add(frame);
+        }
+        schedule(connection);
+    }
+
+    private void schedule(Connection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            toSchedule.add(connection);
+            if (Thread.currentThread() != ioThread && wakeUpPending.compareAndSet(false, true))
+                selector.wakeup();
+        }
+    }
+
+    /**
+     * Stops the I/O thread and disconnects all the clients.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join();
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    Connection connection = (Connection) key.attachment();
+                    if (connection.subscription != null) connection.subscription.close();
+                }
+                key.channel().close();
+            }
+            selector.close();
+        } catch (InterruptedException | IOException ignored) {}
+    }
+}
@@ -0,0 +1,490 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * The career statistics of the players, kept across games in local files and keyed by player name.
+ * The totals are in an index file (prefix.idx) of fixed size records sorted by name, which is read into memory and
+ * binary searched. The games played since the index was written are appended to log segments (prefix-N.log) of
+ * records in the same layout. When a segment reaches COMPACT_BYTES a new one is started, and the full ones are folded
+ * into a new index in the background (the segments left by earlier processes are folded when opening the store only
+ * if they add up to COMPACT_BYTES). The changes in the log segments are also kept in memory until then, so reading a
+ * player's statistics takes the same time however many games were played.
+ * The files are read into heap buffers rather than mapped, since a mapped file can be neither replaced nor deleted
+ * on Windows while it is mapped.
+ * The store of a prefix is shared by the games of the process (see open), and is meant to stay open for all of them
+ * (see Main and RoomManager): reopening it for every game would fold its segments every time. The files must not be
+ * used by several processes at once.
+ */
+public class PlayerStatsStore {
+
+    /**
+     * The file header: magic, version, record size, and the segment number (for the index, the first segment that is
+     * not folded into it).
+     */
+    static final int MAGIC = 0x53455453; // "SETS"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * Record layout: the name (UTF-8, zero padded, longer names are cut) and the statistics (see Stats).
+     */
+    static final int NAME_BYTES = 64;
+    static final int FIELDS = 6;
+    static final int RECORD_SIZE = NAME_BYTES + FIELDS * Long.BYTES;
+
+    /**
+     * The size of a log segment from which it is folded into the index.
+     */
+    static final long COMPACT_BYTES = 1024 * 1024;
+
+    private static final Map<Path, PlayerStatsStore> stores = new HashMap<>();
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "player-stats-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The statistics of a player, in a game or in total.
+     */
+    public static final class Stats {
+        public final long games;
+        public final long points;
+        public final long penalties;
+        public final long claims;
+        public final long claimNanos;
+        public final long freezeMillis;
+
+        /**
+         * @param claims     - the number of claims that were ruled.
+         * @param claimNanos - the total time from the start of the claims to their rulings.
+         */
+        public Stats(long games, long points, long penalties, long claims, long claimNanos, long freezeMillis) {
+            this.games = games;
+            this.points = points;
+            this.penalties = penalties;
+            this.claims = claims;
+            this.claimNanos = claimNanos;
+            this.freezeMillis = freezeMillis;
+        }
+
+        private Stats(long[] fields) {
+            this(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+        }
+
+        private long[] fields() {
+            return new long[]{games, points, penalties, claims, claimNanos, freezeMillis};
+        }
+
+        public long averageClaimNanos() {
+            return claims == 0 ? 0 : claimNanos / claims;
+        }
+
+        @Override
+        public String toString() {
+            return "games: " + games + ", points: " + points + ", penalties: " + penalties + ", average claim: "
+                    + averageClaimNanos() / 1000 + "us, frozen: " + freezeMillis + "ms";
+        }
+    }
+
+    private final Logger logger;
+    private final String prefix;
+    private final Path index;
+
+    /**
+     * The mapped index (no records if there is none yet).
+     */
+    private ByteBuffer snapshot;
+
+    /**
+     * The changes in the full segments (being folded into the index) and in the current segment, by name.
+     */
+    private Map<String, long[]> sealed = new HashMap<>();
+    private final Map<String, long[]> current = new HashMap<>();
+
+    /**
+     * The current segment (opened on the first write) and its size, and the first segment that is not full.
+     */
+    private FileChannel log;
+    private long logSize;
+    private int segment;
+    private boolean compacting;
+
+    /**
+     * The number of callers that opened the store and did not close it yet (guarded by stores).
+     */
+    private int users;
+
+    /**
+     * Opens the store with the given files (the store is shared by all the callers with the same prefix, and each of
+     * them closes it when done).
+     *
+     * @param prefix - the path prefix of the files.
+     */
+    public static PlayerStatsStore open(String prefix, Logger logger) throws IOException {
+        Path path = Paths.get(prefix).toAbsolutePath().normalize();
+        synchronized (stores) {
+            PlayerStatsStore store = stores.get(path);
+            if (store == null) {
+                store = new PlayerStatsStore(logger, path.toString());
+                stores.put(path, store);
+            }
+            store.users++;
+            return store;
+        }
+    }
+
+    private PlayerStatsStore(Logger logger, String prefix) throws IOException {
+        this.logger = logger;
+        this.prefix = prefix;
+        this.index = Paths.get(prefix + ".idx");
+        Path parent = index.getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        int folded = 0;
+        snapshot = ByteBuffer.allocate(HEADER_SIZE);
+        if (Files.exists(index)) {
+            snapshot = read(index);
+            folded = header(snapshot, index);
+        }
+        segment = folded;
+        long unfolded = 0;
+        List<Integer> segments = segments();
+        for (int number : segments) {
+            Path file = segment(number);
+            if (number < folded) {
+                // already in the index (the compaction was stopped before it deleted the segment)
+                Files.delete(file);
+                continue;
+            }
+            ByteBuffer records = read(file);
+            unfolded += records.limit();
+            // a segment without a header was created just before the process stopped
+            if (records.limit() >= HEADER_SIZE) header(records, file);
+            for (int position = HEADER_SIZE; position + RECORD_SIZE <= records.limit(); position += RECORD_SIZE)
+                add(sealed, name(records, position), fields(records, position));
+            segment = number + 1;
+        }
+        if (unfolded >= COMPACT_BYTES) compact();
+    }
+
+    private static ByteBuffer read(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Checks the header of a file.
+     *
+     * @return - the segment number in the header.
+     */
+    private static int header(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION
+                || buffer.getShort(6) != RECORD_SIZE)
+            throw new IOException(file + " is not a player statistics file");
+        return (int) buffer.getLong(8);
+    }
+
+    private static ByteBuffer header(int segment) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).putLong(segment);
+        header.flip();
+        return header;
+    }
+
+    private Path segment(int number) {
+        return Paths.get(prefix + "-" + number + ".log");
+    }
+
+    /**
+     * @return - the numbers of the log segments on disk, in ascending order.
+     */
+    private List<Integer> segments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        String name = index.getFileName().toString();
+        String base = name.substring(0, name.length() - ".idx".length()) + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(index.toAbsolutePath().getParent(), base + "*.log")) {
+            for (Path file : files) {
+                String number = file.getFileName().toString();
+                number = number.substring(base.length(), number.length() - ".log".length());
+                try {
+                    segments.add(Integer.parseInt(number));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * @return - the name, cut to NAME_BYTES of UTF-8 (the key the name is stored under).
+     */
+    static String key(String name) {
+        return new String(encode(name), StandardCharsets.UTF_8).trim();
+    }
+
+    private static byte[] encode(String name) {
+        byte[] bytes = name.trim().getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[NAME_BYTES];
+        int length = Math.min(bytes.length, NAME_BYTES);
+        // do not cut a character in the middle
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80)
+            length--;
+        System.arraycopy(bytes, 0, padded, 0, length);
+        return padded;
+    }
+
+    private static String name(ByteBuffer records, int position) {
+        byte[] bytes = new byte[NAME_BYTES];
+        for (int i = 0; i < NAME_BYTES; i++)
+            bytes[i] = records.get(position + i);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    private static long[] fields(ByteBuffer records, int position) {
+        long[] fields = new long[FIELDS];
+        for (int i = 0; i < FIELDS; i++)
+            fields[i] = records.getLong(position + NAME_BYTES + i * Long.BYTES);
+        return fields;
+    }
+
+    private static void put(ByteBuffer records, String name, long[] fields) {
+        records.put(encode(name));
+        for (long field : fields)
+            records.putLong(field);
+    }
+
+    private static void add(Map<String, long[]> totals, String name, long[] fields) {
+        long[] total = totals.computeIfAbsent(name, key -> new long[FIELDS]);
+        for (int i = 0; i < FIELDS; i++)
+            total[i] += fields[i];
+    }
+
+    /**
+     * Compares names by their UTF-8 bytes (the order of the index).
+     */
+    private static int compare(String a, String b) {
+        byte[] x = encode(a);
+        byte[] y = encode(b);
+        for (int i = 0; i < NAME_BYTES; i++)
+            if (x[i] != y[i]) return (x[i] & 0xFF) - (y[i] & 0xFF);
+        return 0;
+    }
+
+    /**
+     * Adds a game's statistics of a player to the store.
+     *
+     * @param name - the player's name.
+     * @param game - the player's statistics in the game (games is usually 1).
+     */
+    public synchronized void add(String name, Stats game) throws IOException {
+        String key = key(name);
+        if (log == null) {
+            log = FileChannel.open(segment(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            log.write(header(segment));
+            logSize = HEADER_SIZE;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+        put(record, key, game.fields());
+        record.flip();
+        while (record.hasRemaining())
+            log.write(record);
+        logSize += RECORD_SIZE;
+        add(current, key, game.fields());
+        if (logSize >= COMPACT_BYTES && !compacting) seal();
+    }
+
+    /**
+     * Closes the current segment and folds the full ones into the index in the background.
+     */
+    private void seal() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            segment++;
+        }
+        current.forEach((name, fields) -> add(sealed, name, fields));
+        current.clear();
+        compact();
+    }
+
+    private void compact() {
+        compacting = true;
+        int folded = segment;
+        Map<String, long[]> changes = new HashMap<>(sealed);
+        ByteBuffer old = snapshot;
+        compactor.execute(() -> {
+            ByteBuffer folding = null;
+            try {
+                folding = fold(old, changes, folded);
+            } catch (IOException e) {
+                logger.severe("cannot compact the player statistics " + prefix + ": " + e.getMessage());
+            }
+            if (folding != null) {
+                // the segments are in the new index (and their changes stay in memory until it replaces the old one)
+                try {
+                    for (int number : segments())
+                        if (number < folded) Files.delete(segment(number));
+                } catch (IOException e) {
+                    logger.warning("cannot delete the player statistics segments " + prefix + ": " + e.getMessage());
+                }
+            }
+            synchronized (this) {
+                compacting = false;
+                if (folding != null) {
+                    snapshot = folding;
+                    sealed = new HashMap<>();
+                }
+                notifyAll();
+            }
+        });
+    }
+
+    /**
+     * Writes a new index with the totals of the old one and the changes (merging the sorted records).
+     *
+     * @param folded - the first segment that is not in the changes.
+     * @return - the new index.
+     */
+    private ByteBuffer fold(ByteBuffer old, Map<String, long[]> changes, int folded) throws IOException {
+        List<String> names = new ArrayList<>(changes.keySet());
+        names.sort(PlayerStatsStore::compare);
+        Path temporary = Paths.get(prefix + ".idx.tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+            buffer.put(header(folded));
+            int position = HEADER_SIZE;
+            int next = 0;
+            while (position + RECORD_SIZE <= old.limit() || next < names.size()) {
+                String name;
+                long[] fields;
+                int order = position + RECORD_SIZE > old.limit() ? 1
+                        : next == names.size() ? -1 : compare(name(old, position), names.get(next));
+                if (order < 0) {
+                    name = name(old, position);
+                    fields = fields(old, position);
+                    position += RECORD_SIZE;
+                } else {
+                    name = names.get(next++);
+                    fields = changes.get(name).clone();
+                    if (order == 0) {
+                        long[] total = fields(old, position);
+                        for (int i = 0; i < FIELDS; i++)
+                            fields[i] += total[i];
+                        position += RECORD_SIZE;
+                    }
+                }
+                if (buffer.remaining() < RECORD_SIZE) write(channel, buffer);
+                put(buffer, name, fields);
+            }
+            write(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return read(index);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return - the statistics of a player (all zero if the player never played).
+     */
+    public synchronized Stats get(String name) {
+        String key = key(name);
+        long[] fields = new long[FIELDS];
+        int low = 0;
+        int high = (snapshot.limit() - HEADER_SIZE) / RECORD_SIZE - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = HEADER_SIZE + middle * RECORD_SIZE;
+            int order = compare(name(snapshot, position), key);
+            if (order < 0) low = middle + 1;
+            else if (order > 0) high = middle - 1;
+            else {
+                fields = fields(snapshot, position);
+                break;
+            }
+        }
+        Map<String, long[]> totals = new HashMap<>();
+        add(totals, key, fields);
+        if (sealed.containsKey(key)) add(totals, key, sealed.get(key));
+        if (current.containsKey(key)) add(totals, key, current.get(key));
+        return new Stats(totals.get(key));
+    }
+
+    /**
+     * @return - the statistics of all the players, by name.
+     */
+    public synchronized Map<String, Stats> all() {
+        Map<String, long[]> totals = new TreeMap<>();
+        for (int position = HEADER_SIZE; position + RECORD_SIZE <= snapshot.limit(); position += RECORD_SIZE)
+            add(totals, name(snapshot, position), fields(snapshot, position));
+        sealed.forEach((name, fields) -> add(totals, name, fields));
+        current.forEach((name, fields) -> add(totals, name, fields));
+        Map<String, Stats> all = new TreeMap<>();
+        totals.forEach((name, fields) -> all.put(name, new Stats(fields)));
+        return all;
+    }
+
+    /**
+     * Closes the store for the caller. The last caller to close it waits for the compaction in progress (if any) and
+     * closes the current segment. The store can then be opened again.
+     */
+    public void close() throws IOException, InterruptedException {
+        synchronized (stores) {
+            if (--users > 0) return;
+            synchronized (this) {
+                while (compacting)
+                    wait();
+                if (log != null) {
+                    log.close();
+                    log = null;
+                    segment++;
+                }
+            }
+            stores.values().remove(this);
+        }
+    }
+
+    /**
+     * Prints the statistics of all the players.
+     *
+     * @param args - the path prefix of the files.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("usage: PlayerStatsStore <path prefix>");
+            System.exit(1);
+        }
+        PlayerStatsStore store = open(args[0], Logger.getAnonymousLogger());
+        store.all().forEach((name, stats) -> System.out.println(name + ": " + stats));
+        store.close();
+    }
+}
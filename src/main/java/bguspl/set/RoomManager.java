@@ -0,0 +1,250 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games (rooms) in one process. Every room has its own environment (configuration, logger,
+ * clock and user interface) and game entities, and all the rooms' dealers and players run on one shared bounded
+ * executor instead of dedicated threads.
+ *
+ * Since the dealer, its region workers (see DealerRegions) and the players block while waiting (for claims, rulings,
+ * key presses etc.) each of them holds an executor thread for as long as it runs, so a room is only admitted if the
+ * executor has a thread for each of them, and one more for planning the next round (see RoundPlan), which the dealer
+ * waits for (2 + region workers + players), and if its estimated memory fits the per room budget. The computer
+ * players do not need threads of their own: their claims are generated on the player threads.
+ *
+ * So the shared executor bounds the rooms that are open at once, not the threads per actor: it is a thread per
+ * actor drawn from a pool, and at most maxThreads / (2 + region workers + players) rooms play at the same time (e.g.
+ * 1000 rooms of 4 players need 6000 threads). A closed room's threads are free for the next rooms, so the manager
+ * suits many short games over time better than thousands of concurrent ones, which would need the dealer and the
+ * players to be non-blocking tasks that reschedule themselves.
+ */
+public class RoomManager {
+
+    /**
+     * A hosted game.
+     */
+    public static class Room {
+
+        public final int id;
+        public final Env env;
+        public final Table table;
+        public final Dealer dealer;
+        public final Player[] players;
+        private final int threads;
+        private Future<?> game;
+
+        private Room(int id, Env env, Table table, Dealer dealer, Player[] players, int threads) {
+            this.id = id;
+            this.env = env;
+            this.table = table;
+            this.dealer = dealer;
+            this.players = players;
+            this.threads = threads;
+        }
+
+        /**
+         * @return - true iff the room's game is over (or the room was closed).
+         */
+        public boolean isFinished() {
+            return game.isDone();
+        }
+    }
+
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final int maxThreads;
+    private final long roomMemoryBudget;
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * The number of executor threads reserved by the open rooms.
+     */
+    private int reservedThreads;
+
+    /**
+     * The career statistics of the rooms, by path prefix (see PlayerStatsFile). Each store is opened by the first
+     * room that keeps it and stays open until shutdown, so the games do not reopen it.
+     */
+    private final Map<String, PlayerStatsStore> stats = new HashMap<>();
+
+    /**
+     * @param logger           - the parent logger of the rooms' loggers.
+     * @param maxThreads       - the maximum number of threads of the shared executor.
+     * @param roomMemoryBudget - the maximum estimated memory of a room in bytes.
+     */
+    public RoomManager(Logger logger, int maxThreads, long roomMemoryBudget) {
+        this.logger = logger;
+        this.maxThreads = maxThreads;
+        this.roomMemoryBudget = roomMemoryBudget;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                task -> new Thread(task, "room-worker-" + threadNumber.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Estimates the memory used by the game entities of a room with the given configuration.
+     *
+     * @param config - the room's configuration.
+     * @return - the estimated size in bytes.
+     */
+    public static long estimateMemory(Config config) {
+        long deck = 16L * config.deckSize * 2;                         // the deck list and the card to slot mapping
+        long table = 64L * config.tableSize;                           // slots, tokens lists and removal flags
+        long tokens = 24L * config.tableSize * config.featureSize;     // the tokens placed on the table
+        long players = (long) config.players * (512 + 16L * config.featureSize + 64L * config.tableSize);
+        return 4096 + deck + table + tokens + players;
+    }
+
+    /**
+     * Creates a room and starts its game.
+     *
+     * @param properties - the room's configuration.
+     * @param ui         - the room's user interface (null for none).
+     * @return - the new room.
+     * @throws IllegalStateException - if the room does not fit in the executor or in the memory budget.
+     */
+    public Room createRoom(Properties properties, UserInterface ui) {
+        int id = nextId.getAndIncrement();
+        Logger roomLogger = Logger.getAnonymousLogger();
+        roomLogger.setParent(logger);
+        Config config = new Config(roomLogger, properties);
+
+        long memory = estimateMemory(config);
+        if (memory > roomMemoryBudget)
+            throw new IllegalStateException("room " + id + " needs about " + memory + " bytes, the budget is " + roomMemoryBudget);
+        int threads = 2 + Dealer.regionWorkers(config) + config.players;
+        synchronized (this) {
+            if (reservedThreads + threads > maxThreads)
+                throw new IllegalStateException("room " + id + " needs " + threads + " threads, only " + (maxThreads - reservedThreads) + " are free");
+            reservedThreads += threads;
+        }
+
+        UtilImpl util = new UtilImpl(config);
+        UserInterface roomUi = new UserInterfaceDecorator(roomLogger, util, ui == null ? new NullUserInterface() : ui);
+        Env env = new Env(roomLogger, config, roomUi, util,
+                config.virtualClock ? new VirtualClock() : new SystemClock(), executor);
+        if (config.metrics) env.metrics.register(logger, "bguspl.set:type=GameMetrics,room=" + id);
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+        if (!config.playerStatsFile.isEmpty()) dealer.setStats(stats(config.playerStatsFile, roomLogger));
+
+        Room room = new Room(id, env, table, dealer, players, threads);
+        FutureTask<Void> game = new FutureTask<>(() -> {
+            try {
+                dealer.run();
+            } finally {
+                release(room);
+            }
+        }, null);
+        room.game = game;
+        rooms.put(id, room);
+        executor.execute(game);
+        logger.info("room " + id + " created.");
+        return room;
+    }
+
+    /**
+     * Terminates a room's game and waits for all of its threads to finish.
+     *
+     * @param id - the room id.
+     * @return - true iff the room existed.
+     */
+    public boolean closeRoom(int id) throws InterruptedException {
+        Room room = rooms.get(id);
+        if (room == null) return false;
+        room.dealer.terminate();
+        try {
+            room.game.get();
+        } catch (ExecutionException e) {
+            logger.severe("room " + id + " failed: " + e.getCause());
+        }
+        return true;
+    }
+
+    /**
+     * @param id - the room id.
+     * @return - the room, or null if there is no such (open) room.
+     */
+    public Room room(int id) {
+        return rooms.get(id);
+    }
+
+    /**
+     * @return - the open rooms.
+     */
+    public Collection<Room> rooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+
+    /**
+     * Closes all the rooms, stops the executor and closes the career statistics.
+     */
+    public void shutdown() throws InterruptedException {
+        for (Integer id : rooms.keySet())
+            closeRoom(id);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        synchronized (stats) {
+            for (PlayerStatsStore store : stats.values()) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    logger.severe("cannot close the player statistics: " + e.getMessage());
+                }
+            }
+            stats.clear();
+        }
+    }
+
+    // Returns the career statistics with the given path prefix, opening them for the first room that keeps them
+    // (null if they cannot be opened)
+    private PlayerStatsStore stats(String prefix, Logger roomLogger) {
+        synchronized (stats) {
+            PlayerStatsStore store = stats.get(prefix);
+            if (store == null) {
+                try {
+                    store = PlayerStatsStore.open(prefix, logger);
+                    stats.put(prefix, store);
+                } catch (IOException e) {
+                    roomLogger.severe("cannot open the player statistics " + prefix + ": " + e.getMessage());
+                }
+            }
+            return store;
+        }
+    }
+
+    // Called when a room's game is over
+    private void release(Room room) {
+        rooms.remove(room.id);
+        synchronized (this) {
+            reservedThreads -= room.threads;
+        }
+        room.env.ui.dispose();
+        room.env.metrics.unregister();
+        logger.info("room " + room.id + " closed.");
+    }
+}
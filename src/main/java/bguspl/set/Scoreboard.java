@@ -0,0 +1,140 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The scores of a game's players: the single source of the scores shown by the user interface and of the winners.
+ * Every player also has an entry in a ranking (a skip list ordered by score, then by id), which is updated with the
+ * score, so the leader and the best score are read in constant time and the top k players in O(k), with thousands
+ * of players and while the scores change.
+ *
+ * @inv score(p) >= 0 for every player p, and best() is the highest score.
+ */
+public class Scoreboard {
+
+    /**
+     * The score of each player.
+     */
+    private final AtomicIntegerArray scores;
+
+    /**
+     * An entry per player, rank(score, player), the highest score first.
+     */
+    private final ConcurrentSkipListSet<Long> ranking = new ConcurrentSkipListSet<>();
+
+    /**
+     * The highest score (scores only increase).
+     */
+    private final AtomicInteger best = new AtomicInteger();
+
+    /**
+     * Held while a player's entry in the ranking is replaced (one lock per player, so the entries of different
+     * players are replaced concurrently).
+     */
+    private final Object[] locks;
+
+    /**
+     * @param players - the number of players, all with a score of 0.
+     */
+    public Scoreboard(int players) {
+        scores = new AtomicIntegerArray(players);
+        locks = new Object[players];
+        for (int player = 0; player < players; player++) {
+            locks[player] = new Object();
+            ranking.add(rank(0, player));
+        }
+    }
+
+    /**
+     * @return - the ranking entry of a player with the given score: higher scores, then lower ids, come first.
+     */
+    private static long rank(int score, int player) {
+        return ((long) -score << 32) | player;
+    }
+
+    private static int player(long rank) {
+        return (int) rank;
+    }
+
+    private static int score(long rank) {
+        return (int) -(rank >> 32);
+    }
+
+    /**
+     * Adds a point to a player's score.
+     *
+     * @return - the player's new score.
+     * @post - score(player) == @pre(score(player)) + 1
+     */
+    public int point(int player) {
+        int score;
+        synchronized (locks[player]) {
+            score = scores.incrementAndGet(player);
+            // the new entry is added first, so the player is always ranked
+            ranking.add(rank(score, player));
+            ranking.remove(rank(score - 1, player));
+        }
+        best.accumulateAndGet(score, Math::max);
+        return score;
+    }
+
+    /**
+     * @return - the score of a player.
+     */
+    public int score(int player) {
+        return scores.get(player);
+    }
+
+    /**
+     * @return - the highest score.
+     */
+    public int best() {
+        return best.get();
+    }
+
+    /**
+     * @return - the id of a player with the highest score (the lowest such id), or -1 if there are no players.
+     */
+    public int leader() {
+        Long first = ranking.isEmpty() ? null : ranking.first();
+        return first == null ? -1 : player(first);
+    }
+
+    /**
+     * @return - the ids of the players with the highest score, in ascending order.
+     */
+    public int[] winners() {
+        int best = best();
+        BitSet winners = new BitSet();
+        for (long rank : ranking) {
+            if (score(rank) < best) break;
+            winners.set(player(rank));
+        }
+        return winners.stream().toArray();
+    }
+
+    /**
+     * @param k - the number of players.
+     * @return - the ids of the k players with the highest scores (fewer if there are fewer players), the highest
+     * score first.
+     */
+    public int[] top(int k) {
+        int[] top = new int[Math.min(k, scores.length())];
+        int count = 0;
+        BitSet seen = new BitSet();
+        for (Iterator<Long> it = ranking.iterator(); count < top.length && it.hasNext(); ) {
+            int player = player(it.next());
+            // a player whose entry is being replaced may be seen twice
+            if (!seen.get(player)) {
+                seen.set(player);
+                top[count++] = player;
+            }
+        }
+        return Arrays.copyOf(top, count);
+    }
+}
@@ -0,0 +1,161 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs headless games at maximum speed (no user interface, no delays, virtual time, computer players only and
+ * seeded shuffles) over a sweep of configurations, and prints the throughput and time per phase of each
+ * configuration as CSV.
+ *
+ * Usage: Simulator [option value]...
+ *   --games N             the number of games per configuration (default 10)
+ *   --players 2,4         the numbers of computer players to sweep (default 2)
+ *   --tables 3x4,4x5      the table sizes (rows x columns) to sweep (default 3x4)
+ *   --feature-sizes 3     the feature sizes to sweep (default 3)
+ *   --feature-count N     the number of features on the cards (default 4)
+ *   --seed S              the seed of the first game, each game adds its index (default 0)
+ *   --threads T           the number of games to run in parallel (default: the number of cores)
+ */
+public class Simulator {
+
+    /**
+     * The results of one game.
+     */
+    private static class GameResult {
+        long nanos;
+        int claims;
+        int rounds;
+        long dealNanos;
+        long playNanos;
+        long collectNanos;
+    }
+
+    /**
+     * Creates the configuration of a simulated game.
+     */
+    static Properties properties(int players, int rows, int columns, int featureSize, int featureCount, long seed) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("Rows", Integer.toString(rows));
+        properties.setProperty("Columns", Integer.toString(columns));
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        properties.setProperty("ShuffleSeed", Long.toString(seed));
+        properties.setProperty("VirtualClock", "True");
+        properties.setProperty("TurnTimeoutSeconds", "0"); // reshuffle only when there is no set on the table
+        properties.setProperty("CountdownFps", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        return properties;
+    }
+
+    /**
+     * Runs a single headless game on the calling thread.
+     */
+    private static GameResult runGame(Properties properties) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        long start = System.nanoTime();
+        dealer.run();
+        GameResult result = new GameResult();
+        result.nanos = System.nanoTime() - start;
+        result.claims = dealer.claimsChecked();
+        result.rounds = dealer.roundsPlayed();
+        result.dealNanos = dealer.dealNanos();
+        result.playNanos = dealer.playNanos();
+        result.collectNanos = dealer.collectNanos();
+        return result;
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int games = 10;
+        int[] playerCounts = {2};
+        String[] tables = {"3x4"};
+        int[] featureSizes = {3};
+        int featureCount = 4;
+        long seed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(value); break;
+                case "--players": playerCounts = parseInts(value); break;
+                case "--tables": tables = value.split(","); break;
+                case "--feature-sizes": featureSizes = parseInts(value); break;
+                case "--feature-count": featureCount = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        System.out.println("featureSize,featureCount,rows,columns,players,games,seconds,gamesPerSecond,claims,claimsPerSecond,rounds,dealMillis,playMillis,collectMillis");
+        try {
+            for (int featureSize : featureSizes)
+                for (String tableSize : tables)
+                    for (int playerCount : playerCounts) {
+                        String[] dimensions = tableSize.trim().split("x");
+                        int rows = Integer.parseInt(dimensions[0]);
+                        int columns = Integer.parseInt(dimensions[1]);
+
+                        List<Future<GameResult>> results = new ArrayList<>();
+                        long start = System.nanoTime();
+                        for (int game = 0; game < games; game++) {
+                            Properties properties = properties(playerCount, rows, columns, featureSize, featureCount, seed + game);
+                            results.add(executor.submit(() -> runGame(properties)));
+                        }
+                        long claims = 0, rounds = 0, deal = 0, play = 0, collect = 0;
+                        for (Future<GameResult> future : results) {
+                            GameResult result = future.get();
+                            claims += result.claims;
+                            rounds += result.rounds;
+                            deal += result.dealNanos;
+                            play += result.playNanos;
+                            collect += result.collectNanos;
+                        }
+                        double seconds = (System.nanoTime() - start) / 1e9;
+
+                        System.out.println(featureSize + "," + featureCount + "," + rows + "," + columns + "," + playerCount + ","
+                                + games + "," + String.format(Locale.ROOT, "%.3f", seconds) + "," + String.format(Locale.ROOT, "%.2f", games / seconds) + ","
+                                + claims + "," + String.format(Locale.ROOT, "%.1f", claims / seconds) + "," + rounds + ","
+                                + deal / 1000000 + "," + play / 1000000 + "," + collect / 1000000);
+                    }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A user interface decorator that publishes the state of the table to any number of subscribers (spectators,
+ * remote clients etc.) as a full snapshot followed by deltas, in the NetworkGateway frame format:
+ *   SNAPSHOT rows columns players - the frames that follow (up to the next delta) are the whole state:
+ *                                   CARD_PLACED, TOKEN_PLACED and SCORE frames and a COUNTDOWN frame.
+ *   CARD_PLACED, CARD_REMOVED, TOKEN_PLACED, TOKEN_REMOVED, TOKENS_REMOVED, SCORE, FREEZE, WINNER - deltas.
+ *   COUNTDOWN millis warn         - published only when the displayed value changes.
+ *
+ * Every delta is encoded once, and all the subscribers get a view of the same buffer. Each subscriber has a bounded
+ * queue of deltas: when it is full, the subscriber is resynced (its queue is dropped and its next poll returns a
+ * fresh snapshot) and after too many resyncs it is dropped, so a slow subscriber never blocks the game threads.
+ */
+public class SpectatorStream implements UserInterface {
+
+    /**
+     * The number of times a subscriber can fall behind before it is dropped.
+     */
+    private static final int MAX_RESYNCS = 3;
+
+    /**
+     * A subscriber's view of the stream.
+     */
+    public static class Subscription implements AutoCloseable {
+
+        private final SpectatorStream stream;
+        private final BlockingQueue<ByteBuffer> deltas;
+        private final Runnable listener;
+
+        /**
+         * True iff the next poll should return a snapshot (initially, and after the subscriber fell behind).
+         */
+        private volatile boolean resync = true;
+        private volatile boolean closed;
+        private volatile int resyncs;
+
+        private Subscription(SpectatorStream stream, int capacity, Runnable listener) {
+            this.stream = stream;
+            this.deltas = new ArrayBlockingQueue<>(capacity);
+            this.listener = listener;
+        }
+
+        /**
+         * @return - the next snapshot or delta frames (one or more frames), or null if there are none.
+         */
+        public ByteBuffer poll() {
+            if (closed) return null;
+            if (resync) return stream.snapshot(this);
+            return deltas.poll();
+        }
+
+        /**
+         * Waits for the next snapshot or delta frames.
+         *
+         * @return - the frames, or null if the timeout passed or the subscription is closed.
+         */
+        public ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+            ByteBuffer frames = poll();
+            if (frames != null || closed) return frames;
+            return deltas.poll(timeout, unit);
+        }
+
+        /**
+         * @return - true iff a poll would return frames.
+         */
+        public boolean hasNext() {
+            return !closed && (resync || !deltas.isEmpty());
+        }
+
+        /**
+         * @return - true iff the subscription was closed (by the subscriber, because it was too slow, or because the
+         *           game is over).
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return - the number of times the subscriber fell behind and was resynced.
+         */
+        public int resyncs() {
+            return resyncs;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            stream.subscriptions.remove(this);
+            deltas.clear();
+        }
+
+        // Called by the publisher with the stream's lock held
+        private void offer(ByteBuffer frame) {
+            if (resync) return; // the coming snapshot includes this delta
+            if (!deltas.offer(frame.duplicate())) {
+                if (++resyncs > MAX_RESYNCS) close();
+                else resync = true;
+            }
+            if (listener != null) listener.run();
+        }
+    }
+
+    private final Config config;
+    private final UserInterface ui;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The state of the table, for the snapshots.
+     */
+    private final int[] cards;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private long countdown;
+    private boolean warn;
+
+    /**
+     * @param config - the game configuration.
+     * @param ui     - the user interface to forward the calls to (may be null).
+     */
+    public SpectatorStream(Config config, UserInterface ui) {
+        this.config = config;
+        this.ui = ui;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize][config.players];
+        scores = new int[config.players];
+    }
+
+    /**
+     * Subscribes to the stream. The first poll returns a snapshot.
+     *
+     * @param capacity - the number of delta buffers the subscriber may fall behind by before it is resynced.
+     * @param listener - called (by the publishing thread) whenever frames are published to the subscriber, e.g. to
+     *                   wake up a consumer thread. Must not block. May be null.
+     * @return - the subscription.
+     */
+    public Subscription subscribe(int capacity, Runnable listener) {
+        Subscription subscription = new Subscription(this, capacity, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return - the number of subscribers.
+     */
+    public int subscribers() {
+        return subscriptions.size();
+    }
+
+    // Builds a snapshot for a subscriber that is (re)synced
+    private synchronized ByteBuffer snapshot(Subscription subscription) {
+        subscription.deltas.clear();
+        subscription.resync = false;
+        int frames = 2 + cards.length + scores.length;
+        for (boolean[] slot : tokens)
+            for (boolean token : slot)
+                if (token) frames++;
+        ByteBuffer snapshot = ByteBuffer.allocate(frames * NetworkGateway.FRAME_SIZE);
+        put(snapshot, NetworkGateway.SNAPSHOT, config.rows, config.columns, config.players);
+        for (int slot = 0; slot < cards.length; slot++) {
+            if (cards[slot] >= 0) put(snapshot, NetworkGateway.CARD_PLACED, slot, cards[slot], 0);
+            for (int player = 0; player < scores.length; player++)
+                if (tokens[slot][player]) put(snapshot, NetworkGateway.TOKEN_PLACED, player, slot, 0);
+        }
+        for (int player = 0; player < scores.length; player++)
+            put(snapshot, NetworkGateway.SCORE, player, scores[player], 0);
+        put(snapshot, NetworkGateway.COUNTDOWN, (int) countdown, warn ? 1 : 0, 0);
+        snapshot.flip();
+        return snapshot;
+    }
+
+    private static void put(ByteBuffer buffer, int type, int a, int b, int c) {
+        buffer.putInt(type).putInt(a).putInt(b).putInt(c);
+    }
+
+    // Called with the stream's lock held, after the state was updated
+    private void publish(int type, int a, int b, int c) {
+        if (subscriptions.isEmpty()) return;
+        ByteBuffer frame = NetworkGateway.encode(type, a, b, c).asReadOnlyBuffer();
+        for (Subscription subscription : subscriptions)
+            subscription.offer(frame);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        synchronized (this) {
+            cards[slot] = card;
+            publish(NetworkGateway.CARD_PLACED, slot, card, 0);
+        }
+        if (ui != null) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        synchronized (this) {
+            cards[slot] = -1;
+            publish(NetworkGateway.CARD_REMOVED, slot, 0, 0);
+        }
+        if (ui != null) ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        synchronized (this) {
+            tokens[slot][player] = true;
+            publish(NetworkGateway.TOKEN_PLACED, player, slot, 0);
+        }
+        if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        synchronized (this) {
+            for (boolean[] slot : tokens)
+                Arrays.fill(slot, false);
+            publish(NetworkGateway.TOKENS_REMOVED, -1, 0, 0);
+        }
+        if (ui != null) ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        synchronized (this) {
+            Arrays.fill(tokens[slot], false);
+            publish(NetworkGateway.TOKENS_REMOVED, slot, 0, 0);
+        }
+        if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        synchronized (this) {
+            tokens[slot][player] = false;
+            publish(NetworkGateway.TOKEN_REMOVED, player, slot, 0);
+        }
+        if (ui != null) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void placeTokens(int player, int[] slots) {
+        synchronized (this) {
+            for (int slot = 0; slot < tokens.length; slot++) {
+                if (tokens[slot][player]) {
+                    tokens[slot][player] = false;
+                    publish(NetworkGateway.TOKEN_REMOVED, player, slot, 0);
+                }
+            }
+            for (int slot : slots) {
+                tokens[slot][player] = true;
+                publish(NetworkGateway.TOKEN_PLACED, player, slot, 0);
+            }
+        }
+        if (ui != null) ui.placeTokens(player, slots);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        synchronized (this) {
+            // the display shows seconds, or hundredths of a second when warning
+            long resolution = warn ? 10 : 1000;
+            boolean changed = warn != this.warn || millies / resolution != countdown / resolution;
+            countdown = millies;
+            this.warn = warn;
+            if (changed) publish(NetworkGateway.COUNTDOWN, (int) millies, warn ? 1 : 0, 0);
+        }
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        synchronized (this) {
+            publish(NetworkGateway.FREEZE, player, (int) millies, 0);
+        }
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        synchronized (this) {
+            scores[player] = score;
+            publish(NetworkGateway.SCORE, player, score, 0);
+        }
+        if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        synchronized (this) {
+            for (int player : players)
+                publish(NetworkGateway.WINNER, player, 0, 0);
+        }
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+            if (subscription.listener != null) subscription.listener.run();
+        }
+        if (ui != null) ui.dispose();
+    }
+}
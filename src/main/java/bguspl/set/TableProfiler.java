@@ -0,0 +1,131 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Profiles the contention on the table's monitor (see TableProfiling): for each thread and each method that acquired
+ * the monitor, the number of acquisitions, the total time waited for the monitor, the total and the longest time it
+ * was held.
+ * Every thread records into its own sites, so the profiled threads never contend on the profiler itself.
+ */
+class TableProfiler {
+
+    /**
+     * The statistics of one method on one thread (only updated by that thread).
+     */
+    private static class Site {
+        final String thread;
+        final String method;
+        long acquisitions;
+        long waitNanos;
+        long holdNanos;
+        long maxHoldNanos;
+
+        Site(String thread, String method) {
+            this.thread = thread;
+            this.method = method;
+        }
+
+        synchronized void acquired(long waited) {
+            acquisitions++;
+            waitNanos += waited;
+        }
+
+        synchronized void released(long held) {
+            holdNanos += held;
+            maxHoldNanos = Math.max(maxHoldNanos, held);
+        }
+
+        synchronized long[] values() {
+            return new long[]{acquisitions, waitNanos, holdNanos, maxHoldNanos};
+        }
+    }
+
+    /**
+     * The sites of a thread, and the site of the method that holds the monitor (null if none).
+     */
+    private static class ThreadSites {
+        final Map<String, Site> methods = new HashMap<>();
+        Site holding;
+    }
+
+    private final ConcurrentLinkedQueue<Site> sites = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadSites> threadSites = ThreadLocal.withInitial(ThreadSites::new);
+
+    /**
+     * Called right after the monitor is acquired (not for reentrant acquisitions).
+     */
+    void acquired(String method, long waitedNanos) {
+        ThreadSites current = threadSites.get();
+        Site site = current.methods.get(method);
+        if (site == null) {
+            site = new Site(Thread.currentThread().getName(), method);
+            current.methods.put(method, site);
+            sites.add(site);
+        }
+        site.acquired(waitedNanos);
+        current.holding = site;
+    }
+
+    /**
+     * Called right before the monitor is released (not for reentrant acquisitions).
+     */
+    void released(long heldNanos) {
+        ThreadSites current = threadSites.get();
+        if (current.holding == null) return;
+        current.holding.released(heldNanos);
+        current.holding = null;
+    }
+
+    /**
+     * @return - the contention report: a line per thread and method, the longest total hold time first, and a line
+     * per method with the totals of all the threads.
+     */
+    String report() {
+        List<String> threads = new ArrayList<>();
+        List<String> methods = new ArrayList<>();
+        List<long[]> values = new ArrayList<>();
+        Map<String, long[]> totals = new HashMap<>();
+        for (Site site : sites) {
+            long[] value = site.values();
+            threads.add(site.thread);
+            methods.add(site.method);
+            values.add(value);
+            long[] total = totals.computeIfAbsent(site.method, method -> new long[4]);
+            total[0] += value[0];
+            total[1] += value[1];
+            total[2] += value[2];
+            total[3] = Math.max(total[3], value[3]);
+        }
+
+        StringBuilder report = new StringBuilder("table contention:");
+        line(report, "thread", "method", "acquisitions", "wait", "hold", "max hold");
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) order.add(i);
+        order.sort((a, b) -> Long.compare(values.get(b)[2], values.get(a)[2]));
+        for (int i : order)
+            line(report, threads.get(i), methods.get(i), values.get(i));
+        List<Map.Entry<String, long[]>> byMethod = new ArrayList<>(totals.entrySet());
+        byMethod.sort((a, b) -> Long.compare(b.getValue()[2], a.getValue()[2]));
+        for (Map.Entry<String, long[]> total : byMethod)
+            line(report, "(all)", total.getKey(), total.getValue());
+        return report.toString();
+    }
+
+    private static void line(StringBuilder report, String thread, String method, long[] value) {
+        line(report, thread, method, Long.toString(value[0]), millis(value[1]), millis(value[2]), millis(value[3]));
+    }
+
+    private static void line(StringBuilder report, String... columns) {
+        report.append(System.lineSeparator())
+                .append(String.format("  %-16s %-22s %12s %12s %12s %12s", (Object[]) columns));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3fms", nanos / 1e6);
+    }
+}
@@ -43,6 +43,13 @@ public interface UserInterface {
      */
     void removeToken(int player, int slot);
 
+    /**
+     * Move all the tokens of a player at once: remove his name text from every slot and draw it in the given slots.
+     * @param player - the player id.
+     * @param slots  - the slots the player's tokens are now on.
+     */
+    void placeTokens(int player, int[] slots);
+
     /**
      * Set the countdown time to the specified number of milliseconds.
      * @param millies - the milliseconds to be shown.
@@ -4,9 +4,9 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -15,6 +15,9 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch the Swing components: they update the pending state below and mark what changed,
+ * and the event dispatch thread applies all the changes made since the previous frame in one batch, repainting
+ * only the cells that changed.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,14 +26,38 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
-
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
+    private final CardImageStore cardImages;
+
+    /**
+     * The state waiting for the next frame, guarded by pendingLock.
+     */
+    private final Object pendingLock = new Object();
+    private final int[] pendingCards;
+    private final long[][] pendingTokens;
+    private final BitSet dirtySlots = new BitSet();
+    private final long[] pendingFreezes;
+    private final int[] pendingScores;
+    private final BitSet dirtyPlayers = new BitSet();
+    private long pendingTime;
+    private boolean pendingWarn;
+    private boolean pendingElapsed;
+    private boolean timeDirty;
+
+    /**
+     * True iff a batch is waiting to run on the event dispatch thread.
+     */
+    private boolean frameScheduled;
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
+        pendingCards = new int[config.tableSize];
+        Arrays.fill(pendingCards, -1);
+        pendingTokens = new long[config.tableSize][(config.players + 63) / 64];
+        pendingFreezes = new long[config.players];
+        pendingScores = new int[config.players];
+        cardImages = new CardImageStore(logger, config);
+
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -103,39 +130,49 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
         private final Image[][] grid;
-        private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * In the CACHED render mode: the image of the whole table, redrawn one cell at a time, and the marker color
+         * and size of each player.
+         */
+        private final BufferedImage tableImage;
+        private final Color[] playerColors;
+        private final int markerSize;
+        private final int markersPerRow;
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            // the card images are decoded (or drawn) by the card image store
+            emptyCard = cardImages.emptyCard();
 
             grid = new Image[config.rows][config.columns];
+            for (Image[] row : grid)
+                Arrays.fill(row, emptyCard); // init the cards on the table grid as empty cards
+
+            if (config.renderMode.equals("CACHED")) {
+                tokenText = null;
+                tableImage = new BufferedImage(config.columns * config.cellWidth, config.rows * config.cellHeight, BufferedImage.TYPE_INT_RGB);
+                playerColors = new Color[config.players];
+                for (int player = 0; player < config.players; player++)
+                    playerColors[player] = Color.getHSBColor((float) player / config.players, 0.85f, 0.95f);
+                markerSize = Math.max(8, Math.min(config.cellWidth, config.cellHeight) / 8);
+                markersPerRow = Math.max(1, (config.cellWidth - 4) / markerSize);
+                for (int slot = 0; slot < config.tableSize; slot++)
+                    drawCell(slot, new long[(config.players + 63) / 64]);
+                return;
+            }
+
+            tableImage = null;
+            playerColors = null;
+            markerSize = 0;
+            markersPerRow = 0;
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
                     tokenText[row][column].setVerticalAlignment(JLabel.TOP);
@@ -148,63 +185,71 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
+        /**
+         * Shows the given card and tokens in a slot, and repaints the slot's cell.
+         * Called on the event dispatch thread.
+         *
+         * @param tokens - a bitmask of the players with tokens on the slot.
+         */
+        private void updateSlot(int slot, int card, long[] tokens) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            Image image = card < 0 ? null : cardImages.image(card);
+            if (card >= 0 && image == null) // not decoded yet, show an empty card until it is
+                cardImages.load(card).thenRun(() -> redrawSlot(slot));
+            grid[row][column] = image == null ? emptyCard : image;
+            if (tableImage != null) drawCell(slot, tokens);
+            else tokenText[row][column].setText(generatePlayersTokenText(tokens));
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private void removeCard(int slot) {
+        /**
+         * Draws a cell of the cached table image: the card, the border and a marker for each token.
+         */
+        private void drawCell(int slot, long[] tokens) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
-        }
-
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            int x = column * config.cellWidth;
+            int y = row * config.cellHeight;
+            Graphics2D g = tableImage.createGraphics();
+            try {
+                g.setColor(getBackground());
+                g.fillRect(x, y, config.cellWidth, config.cellHeight);
+                g.drawImage(grid[row][column], x, y, null);
+                g.setColor(Color.BLACK);
+                g.drawRect(x, y, config.cellWidth - 1, config.cellHeight - 1);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                for (int word = 0; word < tokens.length; word++)
+                    for (long bits = tokens[word]; bits != 0; bits &= bits - 1) {
+                        int player = word * 64 + Long.numberOfTrailingZeros(bits);
+                        int markerX = x + 2 + (player % markersPerRow) * markerSize;
+                        int markerY = y + 2 + (player / markersPerRow) * markerSize;
+                        g.setColor(playerColors[player]);
+                        g.fillOval(markerX, markerY, markerSize - 2, markerSize - 2);
+                        g.setColor(Color.BLACK);
+                        g.drawOval(markerX, markerY, markerSize - 2, markerSize - 2);
+                    }
+            } finally {
+                g.dispose();
             }
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
-            }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+        private String generatePlayersTokenText(long[] tokens) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < tokens.length; word++)
+                for (long bits = tokens[word]; bits != 0; bits &= bits - 1) {
+                    if (text.length() > 0) text.append(", ");
+                    text.append(config.playerNames[word * 64 + Long.numberOfTrailingZeros(bits)]);
+                }
+            return text.toString();
         }
 
         @Override
         public void paintComponent(Graphics g) {
+            if (tableImage != null) {
+                g.drawImage(tableImage, 0, 0, this);
+                return;
+            }
             // draw card images
             for (int row = 0; row < config.rows; row++)
                 for (int column = 0; column < config.columns; column++)
@@ -274,61 +319,196 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
+    /**
+     * Schedules a batch on the event dispatch thread, unless one is already waiting.
+     * Called with pendingLock held.
+     */
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            EventQueue.invokeLater(this::applyFrame);
+        }
+    }
+
+    /**
+     * Redraws a slot in the next frame.
+     */
+    private void redrawSlot(int slot) {
+        synchronized (pendingLock) {
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Applies all the changes made since the previous frame. Runs on the event dispatch thread.
+     */
+    private void applyFrame() {
+        int[] slots, cards;
+        long[][] tokens;
+        int[] players;
+        long[] freezes;
+        int[] scores;
+        boolean time, warn = false, elapsed = false;
+        long millies = 0;
+        synchronized (pendingLock) {
+            frameScheduled = false;
+            slots = dirtySlots.stream().toArray();
+            cards = new int[slots.length];
+            tokens = new long[slots.length][];
+            for (int i = 0; i < slots.length; i++) {
+                cards[i] = pendingCards[slots[i]];
+                tokens[i] = pendingTokens[slots[i]].clone();
+            }
+            dirtySlots.clear();
+            players = dirtyPlayers.stream().toArray();
+            freezes = new long[players.length];
+            scores = new int[players.length];
+            for (int i = 0; i < players.length; i++) {
+                freezes[i] = pendingFreezes[players[i]];
+                scores[i] = pendingScores[players[i]];
+            }
+            dirtyPlayers.clear();
+            time = timeDirty;
+            if (time) {
+                millies = pendingTime;
+                warn = pendingWarn;
+                elapsed = pendingElapsed;
+                timeDirty = false;
+            }
+        }
+
+        for (int i = 0; i < slots.length; i++)
+            gamePanel.updateSlot(slots[i], cards[i], tokens[i]);
+        for (int i = 0; i < players.length; i++) {
+            playersPanel.setFreeze(players[i], freezes[i]);
+            playersPanel.setScore(players[i], scores[i]);
+        }
+        if (time) {
+            if (elapsed) timerPanel.setElapsed(millies);
+            else timerPanel.setCountdown(millies, warn);
+        }
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        cardImages.load(card); // start decoding the image before the event dispatch thread needs it
+        synchronized (pendingLock) {
+            pendingCards[slot] = card;
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        synchronized (pendingLock) {
+            pendingCards[slot] = -1;
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        synchronized (pendingLock) {
+            pendingTokens[slot][player / 64] |= 1L << player;
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        synchronized (pendingLock) {
+            for (long[] tokens : pendingTokens)
+                Arrays.fill(tokens, 0);
+            dirtySlots.set(0, config.tableSize);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        synchronized (pendingLock) {
+            Arrays.fill(pendingTokens[slot], 0);
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        synchronized (pendingLock) {
+            pendingTokens[slot][player / 64] &= ~(1L << player);
+            dirtySlots.set(slot);
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    public void placeTokens(int player, int[] slots) {
+        synchronized (pendingLock) {
+            for (int slot = 0; slot < pendingTokens.length; slot++) {
+                if ((pendingTokens[slot][player / 64] & 1L << player) != 0) {
+                    pendingTokens[slot][player / 64] &= ~(1L << player);
+                    dirtySlots.set(slot);
+                }
+            }
+            for (int slot : slots) {
+                pendingTokens[slot][player / 64] |= 1L << player;
+                dirtySlots.set(slot);
+            }
+            scheduleFrame();
+        }
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        synchronized (pendingLock) {
+            pendingTime = millies;
+            pendingWarn = warn;
+            pendingElapsed = false;
+            timeDirty = true;
+            scheduleFrame();
+        }
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        synchronized (pendingLock) {
+            pendingTime = millies;
+            pendingElapsed = true;
+            timeDirty = true;
+            scheduleFrame();
+        }
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        synchronized (pendingLock) {
+            pendingFreezes[player] = millies;
+            dirtyPlayers.set(player);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        synchronized (pendingLock) {
+            pendingScores[player] = score;
+            dirtyPlayers.set(player);
+            scheduleFrame();
+        }
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        EventQueue.invokeLater(() -> {
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
     }
 
     @Override
@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A clock whose time only moves when the game waits, so that games (e.g. simulations and tests of timeouts) run as
+ * fast as possible. The time is moved by the thread that polls (the dealer, called the keeper here): a poll that
+ * finds nothing moves the time to the end of its timeout, or with no timeout, to the next deadline (the earliest
+ * sleep to end, or the deadline set with setDeadline). Any other thread's sleep waits until the keeper moves the
+ * time past its end, so the time of every event only depends on the order of the waits, not on how long the threads
+ * ran in between.
+ * Without a keeper (or once it is gone), a sleep moves the time to its own end. If the keeper does not move the time
+ * for STALL_MILLIS of real time while a thread sleeps (e.g. because it waits for a lock the sleeping thread holds), the
+ * sleeping thread moves it, so the game never hangs on the clock.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The real time a sleep waits for the keeper before it moves the time itself, in milliseconds.
+     */
+    private static final long STALL_MILLIS = 100;
+
+    /**
+     * The current time (only changed holding the clock's lock).
+     */
+    private volatile long now;
+
+    /**
+     * The ends of the sleeps waiting for the keeper.
+     */
+    private final PriorityQueue<Long> sleeps = new PriorityQueue<>();
+
+    /**
+     * The time set with setDeadline.
+     */
+    private long deadline = Long.MAX_VALUE;
+
+    /**
+     * The thread that moves the time (the last thread that polled, null before the first poll).
+     */
+    private Thread keeper;
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (millis <= 0) return;
+        synchronized (this) {
+            long end = now + millis;
+            if (keeper == null || keeper == Thread.currentThread() || !keeper.isAlive()) {
+                moveTo(end);
+                return;
+            }
+            sleeps.add(end);
+            try {
+                while (now < end) {
+                    long before = now;
+                    wait(STALL_MILLIS);
+                    if (now == before) moveTo(end);
+                }
+            } finally {
+                sleeps.remove(end);
+            }
+        }
+    }
+
+    @Override
+    public <E> E poll(BlockingQueue<E> queue, long timeoutMillis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        E element = queue.poll();
+        if (element != null) return element;
+        synchronized (this) {
+            keeper = Thread.currentThread();
+            if (timeoutMillis > 0) {
+                moveTo(now + timeoutMillis);
+            } else {
+                Long sleep = sleeps.peek();
+                long next = sleep == null ? Long.MAX_VALUE : sleep;
+                if (deadline > now) next = Math.min(next, deadline);
+                if (next != Long.MAX_VALUE) moveTo(next);
+            }
+        }
+        // the threads woken up by the new time get a chance to run before the next poll
+        Thread.yield();
+        return queue.poll();
+    }
+
+    @Override
+    public synchronized void setDeadline(long millis) {
+        deadline = millis;
+    }
+
+    /**
+     * Moves the time forward (the time never moves back).
+     *
+     * @param millis - the time to move forward in milliseconds.
+     */
+    public synchronized void advance(long millis) {
+        if (millis > 0) moveTo(now + millis);
+    }
+
+    /**
+     * Moves the time to the given time, if it is later, and wakes up the sleeps that ended.
+     */
+    private void moveTo(long time) {
+        if (time <= now) return;
+        now = time;
+        notifyAll();
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the countdown display at a fixed frame rate, independently of the dealer's loop.
+ * The dealer only publishes the deadline (or the start time, when the display shows the time since the last action),
+ * and the ticker samples it on a timer shared by all the games: CountdownFps times a second, and CountdownWarningFps
+ * times a second during the warning.
+ * With a frame rate of 0 there is no timer, and the dealer updates the display itself (see update).
+ */
+class CountdownTicker {
+
+    /**
+     * The timer of all the tickers (the display runs on real time, even when the game runs on virtual time).
+     */
+    private static final ScheduledExecutorService TIMER = new ScheduledThreadPoolExecutor(1, task -> {
+        Thread thread = new Thread(task, "countdown-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Env env;
+    private final long periodMillis;
+    private final long warningPeriodMillis;
+
+    /**
+     * The published deadline (or start time), and whether it was published at all.
+     */
+    private volatile long time;
+    private volatile boolean published;
+    private volatile boolean running;
+
+    CountdownTicker(Env env) {
+        this.env = env;
+        periodMillis = env.config.countdownFps > 0 ? Math.max(1, Math.round(1000 / env.config.countdownFps)) : 0;
+        warningPeriodMillis = env.config.countdownWarningFps > 0
+                ? Math.max(1, Math.round(1000 / env.config.countdownWarningFps)) : periodMillis;
+    }
+
+    /**
+     * Publishes the time the countdown reaches zero (or the time of the last action, if the turn timeout is 0).
+     */
+    void publish(long time) {
+        this.time = time;
+        published = true;
+    }
+
+    /**
+     * Starts updating the display on the timer (if the frame rate is not 0).
+     */
+    void start() {
+        if (periodMillis <= 0 || env.config.turnTimeoutMillis < 0) return;
+        running = true;
+        TIMER.execute(this::tick);
+    }
+
+    /**
+     * Stops updating the display.
+     */
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Called by the dealer on every pass of its loop: updates the display iff there is no timer.
+     */
+    void update() {
+        if (periodMillis <= 0) display();
+    }
+
+    private void tick() {
+        if (!running) return;
+        boolean warn = display();
+        TIMER.schedule(this::tick, warn ? warningPeriodMillis : periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shows the published countdown.
+     *
+     * @return - true iff the countdown is in the warning period.
+     */
+    private boolean display() {
+        if (!published || env.config.turnTimeoutMillis < 0) return false;
+        long now = env.clock.millis();
+        if (env.config.turnTimeoutMillis == 0) {
+            env.ui.setCountdown(now - time, false);
+            return false;
+        }
+        long left = Math.max(0, time - now);
+        boolean warn = left <= env.config.turnTimeoutWarningMillis;
+        env.ui.setCountdown(left, warn);
+        return warn;
+    }
+}
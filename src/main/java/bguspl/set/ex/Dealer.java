@@ -1,21 +1,26 @@
 package bguspl.set.ex;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameMetrics;
+import bguspl.set.PlayerStatsStore;
 
+import java.io.IOException;
 import java.text.CollationKey;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Stack;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -47,19 +52,92 @@ public class Dealer implements Runnable {
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime = Long.MAX_VALUE;
+    private volatile long reshuffleTime = Long.MAX_VALUE;
 
     private BlockingQueue<Integer> playersWaitBlockingQueue;
     private static final int SLEEP_DURATION = 1000;
-    private long timer = 0;
+    static final int SPANNING = -1;
+    static final int STALE = -2;
+    private volatile long timer = 0;
     protected Stack<Player> threadsCreated = new Stack<Player>();
 
+    /**
+     * Generates the seed of each round's shuffle.
+     */
+    private final Random random;
+
+    /**
+     * Game statistics: the number of claims checked and rounds played, and the time spent dealing the cards,
+     * playing and collecting the cards back (in nanoseconds).
+     */
+    private final AtomicInteger claimsChecked = new AtomicInteger();
+    private int roundsPlayed;
+    private long dealNanos;
+    private long playNanos;
+    private long collectNanos;
+
+    /**
+     * Records the game (null if the game is not recorded).
+     */
+    private volatile GameRecorder recorder;
+
+    /**
+     * The players' career statistics the game is added to (null if they are not kept).
+     */
+    private volatile PlayerStatsStore stats;
+
+    /**
+     * Updates the countdown display from the published deadline.
+     */
+    private final CountdownTicker ticker;
+
+    /**
+     * The next round, prepared in the background while the current one is played (see RoundPlan).
+     */
+    private CompletableFuture<RoundPlan> nextRound;
+
+    /**
+     * True iff flight recorder events are created (see GameEvents).
+     */
+    private final boolean events;
+
+    /**
+     * The workers of the table's regions (none if the dealer rules all the claims itself, see DealerRegions), and the
+     * region of each slot. The dealer's own queue only gets the claims that span regions. The table operations of
+     * the workers still take turns on the Table monitor (see RegionWorker).
+     */
+    private final RegionWorker[] regions;
+    private final int[] slotRegion;
+
+    /**
+     * True iff the table changed since the dealer last looked for sets on it (only tracked with regions).
+     */
+    private volatile boolean tableChanged = true;
+
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
         deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
         this.playersWaitBlockingQueue = new LinkedBlockingQueue<>();
+        this.random = env.config.shuffleSeed == null ? new Random() : new Random(env.config.shuffleSeed);
+        this.ticker = new CountdownTicker(env);
+        this.events = env.config.jfrEvents;
+        int regionCount = Math.max(1, Math.min(env.config.dealerRegions, env.config.rows));
+        this.regions = new RegionWorker[regionWorkers(env.config)];
+        this.slotRegion = new int[env.config.tableSize];
+        for (int region = 0; region < regions.length; region++) {
+            int first = region * env.config.rows / regionCount * env.config.columns;
+            int end = (region + 1) * env.config.rows / regionCount * env.config.columns;
+            regions[region] = new RegionWorker(this, region, first, end);
+            Arrays.fill(slotRegion, first, end, region);
+        }
+        env.metrics.claimQueue(() -> {
+            int size = playersWaitBlockingQueue.size();
+            for (RegionWorker region : regions)
+                size += region.claims.size();
+            return size;
+        });
     }
 
     /**
@@ -71,37 +149,82 @@ public class Dealer implements Runnable {
         for(Player player : players){
             player.createThread();
         }
+        ticker.start();
+        startRegions();
+        // the regions are only played in while the dealer is in the timer loop
+        lockRegions();
+        nextRound = planRound(random.nextLong());
         while (!shouldFinish()) {
-            Collections.shuffle(deck);
-            placeCardsOnTable();
+            long start = System.nanoTime();
+            startRound(nextRound.join());
+            nextRound = planRound(random.nextLong());
             if(env.config.hints)
                table.hints();
+            long dealt = System.nanoTime();
+            unlockRegions();
             timerLoop();
             updateTimerDisplay(false);
+            lockRegions();
+            long played = System.nanoTime();
             removeAllCardsFromTable();
+            dealNanos += dealt - start;
+            playNanos += played - dealt;
+            collectNanos += System.nanoTime() - played;
+            roundsPlayed++;
         }
+        unlockRegions();
+        stopRegions();
+        ticker.stop();
         announceWinners();
+        recordStats();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Adds the game to the players' career statistics (if they are kept, see setStats).
+     */
+    private void recordStats() {
+        if (stats == null) return;
+        long[] penalties = env.metrics.getPlayerPenalties();
+        long[] claims = env.metrics.getPlayerClaims();
+        long[] claimNanos = env.metrics.getPlayerClaimNanos();
+        long[] freezeMillis = env.metrics.getPlayerFreezeMillis();
+        try {
+            for (Player player : players)
+                stats.add(env.config.playerNames[player.id], new PlayerStatsStore.Stats(1, player.score(),
+                        penalties[player.id], claims[player.id], claimNanos[player.id], freezeMillis[player.id]));
+        } catch (IOException e) {
+            env.logger.severe("cannot update the player statistics " + env.config.playerStatsFile + ": " + e.getMessage());
+        }
+    }
+
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     //60 sec
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && env.clock.millis() < reshuffleTime) {
+            long iteration = System.nanoTime();
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
-            removeCardsFromTable();
-            if(placeCardsOnTable() && env.config.turnTimeoutMillis <= 0){
+            // with regions, the workers keep their regions dealt, so the table is only looked at when it changed
+            if (regions.length > 0 && !tableChanged) {
+                env.metrics.dealerIteration(System.nanoTime() - iteration);
+                continue;
+            }
+            lockRegions();
+            tableChanged = false;
+            removeCardsFromTable(0, env.config.tableSize);
+            // with regions, the workers may have dealt the new cards already
+            if((placeCardsOnTable(0, env.config.tableSize) || regions.length > 0) && env.config.turnTimeoutMillis <= 0){
                 List<Integer> cardOnTable = new ArrayList<>();
                 for (Integer card : table.slotToCard) {
                     if (card != null) {
                         cardOnTable.add(card);
                     }
                 }
-                if(env.util.findSets(cardOnTable, 1).size() == 0){
-                    reshuffleTime = System.currentTimeMillis();
+                if(findSets(cardOnTable, 1).size() == 0){
+                    reshuffleTime = env.clock.millis();
                 }
             }
             else if(env.config.turnTimeoutMillis <= 0){
@@ -111,172 +234,433 @@ public class Dealer implements Runnable {
                         cardOnTable.add(card);
                     }
                 }
-                if(env.util.findSets(cardOnTable, 1).size() == 0){
-                    reshuffleTime = System.currentTimeMillis();
+                if(findSets(cardOnTable, 1).size() == 0){
+                    reshuffleTime = env.clock.millis();
                 }
             }
+            unlockRegions();
+            env.metrics.dealerIteration(System.nanoTime() - iteration);
         }
     }
 
+    /**
+     * Starts the workers of the regions (if the table is split into regions).
+     */
+    private void startRegions() {
+        for (RegionWorker region : regions) {
+            if (env.executor != null) env.executor.execute(region);
+            else new Thread(region, "dealer-region-" + region.index).start();
+            env.logger.info("thread dealer-region-" + region.index + " created.");
+        }
+    }
+
+    /**
+     * Stops the workers of the regions. Their pending claims are not ruled (the players are terminated next).
+     */
+    private void stopRegions() {
+        try {
+            for (RegionWorker region : regions)
+                region.stop();
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Takes the locks of all the regions, in order, so no worker changes the table (nothing without regions).
+     */
+    private void lockRegions() {
+        for (RegionWorker region : regions)
+            region.lock.lock();
+    }
+
+    private void unlockRegions() {
+        for (int i = regions.length - 1; i >= 0; i--)
+            regions[i].lock.unlock();
+    }
+
+    /**
+     * Rules a claim whose tokens are all in a region, and removes and deals the cards of the region.
+     * Called by the region's worker, holding the region's lock.
+     */
+    void ruleInRegion(int playerId, RegionWorker region) {
+        rule(playerId);
+        removeCardsFromTable(region.first, region.end);
+        placeCardsOnTable(region.first, region.end);
+        tableChanged = true;
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-            while (!threadsCreated.empty()) {
-                Player tempPlayer = threadsCreated.pop();
+            for (Player tempPlayer = popThread(); tempPlayer != null; tempPlayer = popThread()) {
                 tempPlayer.terminate();
             }
         
         this.terminate = true;
     }
 
+    // Returns the last thread created that was not terminated yet (null if there is none)
+    private Player popThread() {
+        synchronized(threadsCreated){
+            return threadsCreated.empty() ? null : threadsCreated.pop();
+        }
+    }
+
     /**
      * Check if the game should be terminated or the game end conditions are met.
      *
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        if (terminate) return true;
+        Boolean solvable = nextRound.join().solvable(RoundPlan.inDeck(deck, env.config.deckSize));
+        return solvable != null ? !solvable : findSets(deck, 1).size() == 0;
+    }
+
+    /**
+     * Starts preparing the next round in the background, from the cards that can still be dealt in it (the deck and
+     * the cards on the table).
+     *
+     * @param seed - the seed of the round's shuffle.
+     */
+    CompletableFuture<RoundPlan> planRound(long seed) {
+        List<Integer> cards = new ArrayList<>(deck);
+        for (Integer card : table.slotToCard)
+            if (card != null)
+                cards.add(card);
+        return RoundPlan.prepare(env, seed, cards);
+    }
+
+    /**
+     * Orders the deck like the round's plan and swaps the plan's layout onto the empty table, in a single table
+     * operation (so a recorded game has the whole deal after its seed).
+     * Package-private for GameReplayer, which plays the rounds of a recorded game.
+     */
+    void startRound(RoundPlan round) {
+        GameEvents.PlaceCards event = events ? GameEvents.begin(new GameEvents.PlaceCards()) : null;
+        table.locked("startRound", () -> {
+            if (recorder != null) recorder.seed(round.seed);
+            int[] layout;
+            int deckSize;
+            synchronized (deck) {
+                layout = round.deal(deck, env.config.tableSize);
+                deckSize = deck.size();
+            }
+            if (layout.length > 0) {
+                table.placeLayout(layout);
+                updateTimerDisplay(true);
+                if (event != null) event.commit(layout.length, deckSize);
+            }
+        });
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * Package-private for GameReplayer.
+     *
+     * @param first - the first slot to check.
+     * @param end   - the slot after the last slot to check.
      */
-    private void removeCardsFromTable() {
-        synchronized(table){
-            boolean removed = false;
-            for(int slot=0 ; slot<env.config.tableSize; slot++){
+    void removeCardsFromTable(int first, int end) {
+        GameEvents.RemoveCards event = events ? GameEvents.begin(new GameEvents.RemoveCards()) : null;
+        int removed = table.locked("removeCardsFromTable", () -> {
+            int count = 0;
+            for(int slot=first ; slot<end; slot++){
                 if(table.shouldRemoveCard[slot] && table.slotToCard[slot] != null){
                     LinkedList<Integer> tokens = table.tokensOnSlot.get(slot);
                     for(Integer player : tokens){
-                        if(playersWaitBlockingQueue.remove(player)){
-                            idToPlayer(player).notifyPlayer(-1);
+                        if(withdrawClaim(player)){
+                            if (recorder != null) recorder.ruling(player, -1);
+                            env.metrics.staleClaim();
+                            Player stale = idToPlayer(player);
+                            long claimNanos = stale.claimNanos();
+                            stale.notifyPlayer(-1);
+                            env.metrics.claimStage(GameMetrics.TO_RULING, claimNanos);
                         }
                     }
                     table.removeCard(slot);
-                    removed = true;
+                    count++;
                 }
                 else{
                     table.shouldRemoveCard[slot] = false;
                 }
             }
-            if (removed) {
+            if (count > 0) {
                 updateTimerDisplay(true);
             }
-        }
+            return count;
+        });
+        if (event != null && removed > 0) event.commit(removed);
+    }
+
+    /**
+     * Removes a claim from the queue it waits in.
+     *
+     * @return - true iff the player's claim was waiting for a ruling.
+     */
+    private boolean withdrawClaim(Integer player) {
+        if (playersWaitBlockingQueue.remove(player)) return true;
+        for (RegionWorker region : regions)
+            if (region.claims.remove(player)) return true;
+        return false;
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
+     * Package-private for GameReplayer.
+     *
+     * @param first - the first slot to fill.
+     * @param end   - the slot after the last slot to fill.
      */
-    private boolean placeCardsOnTable() {
-        boolean placed = false;
-        for(int i=0 ; i<(table.slotToCard).length ; i++){
-            if(!deck.isEmpty() && table.slotToCard[i] == null){
-                // removing the first card in the deck
-                Integer card = deck.remove(0);
-                table.placeCard(card, i);
-                placed = true;
+    boolean placeCardsOnTable(int first, int end) {
+        GameEvents.PlaceCards event = events ? GameEvents.begin(new GameEvents.PlaceCards()) : null;
+        int placed = 0;
+        int[] slots = new int[end - first];
+        int[] cards = new int[end - first];
+        int deckSize;
+        synchronized (deck) {
+            for(int i=first ; i<end ; i++){
+                if(placed < deck.size() && table.slotToCard[i] == null){
+                    // dealing the deck from the top
+                    slots[placed] = i;
+                    cards[placed] = deck.get(placed);
+                    placed++;
+                }
             }
+            deck.subList(0, placed).clear();
+            deckSize = deck.size();
         }
-        if(placed){
+        if(placed > 0){
+            table.placeCards(Arrays.copyOf(slots, placed), Arrays.copyOf(cards, placed));
             updateTimerDisplay(true);
+            if (event != null) event.commit(placed, deckSize);
         }
-        return placed;
+        return placed > 0;
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Package-private for the handoff benchmark, which plays the dealer's side of the handshake.
      */
-    private synchronized void sleepUntilWokenOrTimeout() {
+    synchronized void sleepUntilWokenOrTimeout() {
         Integer playerId = null;
         try {
-            playerId = this.playersWaitBlockingQueue.poll(env.config.tableDelayMillis, TimeUnit.MILLISECONDS);
+            playerId = env.clock.poll(playersWaitBlockingQueue, env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
         if(playerId != null){
-            //check and act
-            Player player =idToPlayer(playerId);
-            if(checkSet(playerId)){
-                //point
-                player.notifyPlayer(1);
+            // with regions, only the claims that span regions get here, and they are ruled with the whole table
+            lockRegions();
+            try {
+                rule(playerId);
+            } finally {
+                unlockRegions();
             }
-            else{
-                //penalize
-                player.notifyPlayer(0);
+        }
+    }
+
+    /**
+     * Rules a pending claim of a player right away (the dealer thread takes the claims from its queue instead).
+     * Package-private for GameReplayer, which rules the claims of a recorded game in the recorded order.
+     *
+     * @return - the ruling (see rule), or null if the player has no pending claim.
+     */
+    Integer ruleNow(int playerId) {
+        return withdrawClaim(playerId) ? rule(playerId) : null;
+    }
+
+    /**
+     * Rules a player's claim: a point if the set is legal, a penalty if not, and a stale claim if one of its cards
+     * was removed since the claim was made.
+     *
+     * @return - the ruling: 1 for a point, 0 for a penalty and -1 for a stale claim.
+     */
+    private int rule(int playerId) {
+        //check and act
+        claimsChecked.incrementAndGet();
+        Player player =idToPlayer(playerId);
+        long claimNanos = player.claimNanos();
+        env.metrics.claimStage(GameMetrics.TO_CHECK, claimNanos);
+        int ruling;
+        if (table.timed) {
+            ruling = table.locked("rule", () -> ruling(playerId));
+        } else {
+            synchronized (table) {
+                ruling = ruling(playerId);
             }
         }
+        if(ruling == -1){
+            env.metrics.staleClaim();
+        }
+        else if(ruling == 1){
+            //point
+            env.metrics.point();
+        }
+        else{
+            //penalize
+            env.metrics.penalty(playerId);
+        }
+        player.notifyPlayer(ruling);
+        env.metrics.claimStage(GameMetrics.TO_RULING, claimNanos);
+        env.metrics.claimRuled(playerId, claimNanos);
+        return ruling;
+    }
+
+    // The table operation of rule: the ruling is recorded in the table operation it was made in; a claim is stale if
+    // one of its cards was removed since it was made (the card can go before the claim is queued, so this holds
+    // without regions too)
+    private int ruling(int playerId) {
+        int made;
+        if(claimRegion(playerId) == STALE)
+            made = -1;
+        else if(checkSet(playerId))
+            made = 1;
+        else
+            made = 0;
+        if (recorder != null) recorder.ruling(playerId, made);
+        return made;
     }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset the countdown and publish it to the countdown display.
      */
     private void updateTimerDisplay(boolean reset) {
         if(env.config.turnTimeoutMillis > 0){
             if(reset){
-                reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+                reshuffleTime = env.clock.millis() + env.config.turnTimeoutMillis;
+                env.clock.setDeadline(reshuffleTime);
+                ticker.publish(reshuffleTime);
             }
-            if(reshuffleTime-System.currentTimeMillis()<=env.config.turnTimeoutWarningMillis && reshuffleTime-System.currentTimeMillis()>=0)
-               env.ui.setCountdown(reshuffleTime-System.currentTimeMillis(), true);
-            else{
-                env.ui.setCountdown(reshuffleTime-System.currentTimeMillis(), false);
-            }
-           
         } else if(env.config.turnTimeoutMillis == 0){
             if(reset){
                 reshuffleTime = Long.MAX_VALUE;
-                timer = System.currentTimeMillis();
+                timer = env.clock.millis();
+                ticker.publish(timer);
             }
-            env.ui.setCountdown(System.currentTimeMillis()-timer, false);
         }
+        ticker.update();
     }
 
     /**
-     * Returns all the cards from the table to the deck.
+     * Returns all the cards from the table to the deck, in a single table operation.
+     * Package-private for GameReplayer.
      */
-    private void removeAllCardsFromTable() {
-        Arrays.fill(table.shouldRemoveCard, true);
-        for(int i=0 ; i<(table.slotToCard).length ; i++){
-            if(table.slotToCard[i] != null){
-                Integer card = table.slotToCard[i];
-                deck.add(card);
+    void removeAllCardsFromTable() {
+        GameEvents.Reshuffle event = events ? GameEvents.begin(new GameEvents.Reshuffle()) : null;
+        env.metrics.reshuffle();
+        int returned = table.locked("removeAllCardsFromTable", () -> {
+            int count = 0;
+            if (recorder != null) recorder.reshuffle();
+            Arrays.fill(table.shouldRemoveCard, true);
+            for(int i=0 ; i<(table.slotToCard).length ; i++){
+                if(table.slotToCard[i] != null){
+                    Integer card = table.slotToCard[i];
+                    deck.add(card);
+                    count++;
+                }
             }
-        }        
-        removeCardsFromTable();
+            removeCardsFromTable(0, env.config.tableSize);
+            return count;
+        });
+        if (event != null) event.commit(returned, deck.size());
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
     private void announceWinners() {
-        if(!terminate){
-            terminate();
-        }
-        LinkedList<Integer> playersId = new LinkedList<>();
-        int maxPoints = 0;
-        for(Player player : players){
-            if(player.score() > maxPoints){
-                playersId.clear();
-                playersId.add(player.id);
-                maxPoints = player.score();
-            } else if(player.score() == maxPoints){
-                playersId.add(player.id);
-            }
-        }
-        int[] playersArr = playersId.stream().mapToInt(Integer::intValue).toArray();
-        env.ui.announceWinner(playersArr);
+        // also when the game was terminated from outside, since the players may have been created after that
+        terminate();
+        if (recorder != null) recorder.end(players, table.slotToCard);
+        env.logger.info(env.metrics.claimLatencyReport());
+        if (env.config.tableProfiling) env.logger.info(env.metrics.tableContentionReport());
+        env.logger.info("leaderboard: " + Arrays.toString(env.scoreboard.top(env.config.leaderboardSize))
+                + ", best score: " + env.scoreboard.best());
+        env.ui.announceWinner(env.scoreboard.winners());
         try {
-            Thread.sleep(env.config.endGamePauseMillies);
+            env.clock.sleep(env.config.endGamePauseMillies);
         } catch (InterruptedException ignored) {}
     }
 
+    // Returns the number of region workers of a game with the given configuration (see DealerRegions)
+    public static int regionWorkers(Config config) {
+        int regionCount = Math.max(1, Math.min(config.dealerRegions, config.rows));
+        return regionCount > 1 ? regionCount : 0;
+    }
+
+    // Returns the number of claims the dealer checked
+    public int claimsChecked() {
+        return claimsChecked.get();
+    }
+
+    // Returns the number of rounds (deals) played
+    public int roundsPlayed() {
+        return roundsPlayed;
+    }
+
+    // Returns the total time spent dealing the cards at the start of the rounds (in nanoseconds)
+    public long dealNanos() {
+        return dealNanos;
+    }
+
+    // Returns the total time spent playing the rounds (in nanoseconds)
+    public long playNanos() {
+        return playNanos;
+    }
+
+    // Returns the total time spent collecting the cards at the end of the rounds (in nanoseconds)
+    public long collectNanos() {
+        return collectNanos;
+    }
+
+    // Records the game with the given recorder
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+        table.recorder = recorder;
+    }
+
+    // Adds the game to the given career statistics when it ends (the store is opened and closed by the caller, and
+    // usually kept open for all the games of the process)
+    public void setStats(PlayerStatsStore stats) {
+        this.stats = stats;
+    }
+
+    // Returns the game recorder (null if the game is not recorded)
+    GameRecorder recorder() {
+        return recorder;
+    }
+
     // Used from player to notify the dealer he needs to check the player's set
+    // With regions, a claim whose tokens are all in a region goes to the region's worker
     public void notifyDealer(int playerId) {
+        int region = regions.length > 0 ? claimRegion(playerId) : SPANNING;
         try {
-            playersWaitBlockingQueue.add(playerId);
+            if (region >= 0) regions[region].claims.add(playerId);
+            else playersWaitBlockingQueue.add(playerId);
         } catch (IllegalStateException ignored) {}
     }
 
+    // Gets a player and returns the region all his tokens are in, SPANNING if they are in several regions, or STALE
+    // if he does not have a whole set of tokens on the table (package-private for the tests)
+    int claimRegion(int player) {
+        if (table.timed) return table.locked("claimRegion", () -> claimRegionLocked(player));
+        synchronized (table) {
+            return claimRegionLocked(player);
+        }
+    }
+
+    private int claimRegionLocked(int player) {
+        int region = STALE;
+        int tokens = 0;
+        for(int slot=0 ; slot<table.tokensOnSlot.size() ; slot++){
+            if(table.tokensOnSlot.get(slot).contains(player)){
+                region = tokens == 0 || region == slotRegion[slot] ? slotRegion[slot] : SPANNING;
+                tokens++;
+            }
+        }
+        return tokens == env.config.featureSize ? region : STALE;
+    }
+
     // Gets a player id and returns the player object
     public Player idToPlayer(int id) {
         for(Player player : players){
@@ -289,16 +673,35 @@ public class Dealer implements Runnable {
 
     // Gets a player and checks if his set is legal
     public boolean checkSet(int player) {
-        synchronized(table){
-            int[] set = getSet(player);
-            if(env.util.testSet(set)){
-                table.shouldRemoveCard[table.cardToSlot[set[0]]] = true;
-                table.shouldRemoveCard[table.cardToSlot[set[1]]] = true;
-                table.shouldRemoveCard[table.cardToSlot[set[2]]] = true;
-                return true;
+        GameEvents.CheckSet event = events ? GameEvents.begin(new GameEvents.CheckSet()) : null;
+        boolean legal;
+        if (table.timed) {
+            legal = table.locked("checkSet", () -> checkSetLocked(player));
+        } else {
+            synchronized (table) {
+                legal = checkSetLocked(player);
             }
-            return false;
         }
+        if (event != null) event.commit(player, legal);
+        return legal;
+    }
+
+    private boolean checkSetLocked(int player) {
+        int[] set = getSet(player);
+        if(!env.util.testSet(set))
+            return false;
+        table.shouldRemoveCard[table.cardToSlot[set[0]]] = true;
+        table.shouldRemoveCard[table.cardToSlot[set[1]]] = true;
+        table.shouldRemoveCard[table.cardToSlot[set[2]]] = true;
+        return true;
+    }
+
+    // Finds up to limit sets among the given cards
+    private List<int[]> findSets(List<Integer> cards, int limit) {
+        GameEvents.FindSets event = events ? GameEvents.begin(new GameEvents.FindSets()) : null;
+        List<int[]> sets = env.util.findSets(cards, limit);
+        if (event != null) event.commit(cards.size(), sets.size());
+        return sets;
     }
 
     // Gets a player and returning his tokens he placed
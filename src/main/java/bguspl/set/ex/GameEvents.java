@@ -0,0 +1,142 @@
+package bguspl.set.ex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the spans of the game's hot paths, so a recording shows them aligned with the GC,
+ * lock and I/O events of the JVM. They are created only if JfrEvents is set (the classes of this file are not even
+ * loaded otherwise), and are recorded only while a recording with the "Set Game" events enabled is running, e.g.
+ * java -XX:StartFlightRecording=filename=game.jfr ...
+ * The jdk.jfr API needs Java 11, which is why the build targets it.
+ */
+final class GameEvents {
+
+    private GameEvents() {}
+
+    /**
+     * Starts timing an event.
+     *
+     * @return - the event.
+     */
+    static <E extends Event> E begin(E event) {
+        event.begin();
+        return event;
+    }
+
+    @Name("bguspl.set.CheckSet")
+    @Label("Check Set")
+    @Category("Set Game")
+    @Description("The dealer checks the set a player claimed")
+    @StackTrace(false)
+    static class CheckSet extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Legal")
+        boolean legal;
+
+        void commit(int player, boolean legal) {
+            this.player = player;
+            this.legal = legal;
+            commit();
+        }
+    }
+
+    @Name("bguspl.set.RemoveCards")
+    @Label("Remove Cards")
+    @Category("Set Game")
+    @Description("The dealer removes the cards of a legal set (or all the cards, on a reshuffle) from the table")
+    @StackTrace(false)
+    static class RemoveCards extends Event {
+        @Label("Removed")
+        int removed;
+
+        void commit(int removed) {
+            this.removed = removed;
+            commit();
+        }
+    }
+
+    @Name("bguspl.set.PlaceCards")
+    @Label("Place Cards")
+    @Category("Set Game")
+    @Description("The dealer fills the empty slots of the table from the deck")
+    @StackTrace(false)
+    static class PlaceCards extends Event {
+        @Label("Placed")
+        int placed;
+
+        @Label("Deck Size")
+        int deckSize;
+
+        void commit(int placed, int deckSize) {
+            this.placed = placed;
+            this.deckSize = deckSize;
+            commit();
+        }
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category("Set Game")
+    @Description("The dealer returns all the cards on the table to the deck")
+    @StackTrace(false)
+    static class Reshuffle extends Event {
+        @Label("Returned")
+        int returned;
+
+        @Label("Deck Size")
+        int deckSize;
+
+        void commit(int returned, int deckSize) {
+            this.returned = returned;
+            this.deckSize = deckSize;
+            commit();
+        }
+    }
+
+    @Name("bguspl.set.FindSets")
+    @Label("Find Sets")
+    @Category("Set Game")
+    @Description("The dealer looks for sets in the deck or among the cards on the table")
+    @StackTrace(false)
+    static class FindSets extends Event {
+        @Label("Cards")
+        @Description("The number of cards searched")
+        int cards;
+
+        @Label("Found")
+        int found;
+
+        void commit(int cards, int found) {
+            this.cards = cards;
+            this.found = found;
+            commit();
+        }
+    }
+
+    @Name("bguspl.set.RulingWait")
+    @Label("Ruling Wait")
+    @Category("Set Game")
+    @Description("A player waits for the dealer's ruling on its claim")
+    @StackTrace(false)
+    static class RulingWait extends Event {
+        @Label("Player")
+        int player;
+
+        @Label("Ruling")
+        @Description("1 for a point, 0 for a penalty, -1 if a card of the claim was taken first")
+        int ruling;
+
+        void commit(int player, int ruling) {
+            this.player = player;
+            this.ruling = ruling;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * Records a game to a text trace file (one event per line) that GameReplayer can play again.
+ * The inputs and the table changes are recorded while holding the table's lock, so the trace has the order they
+ * really happened in. The lines are written to the file by a background thread, so recording never blocks the game
+ * (or the user interface) on the file.
+ *
+ * Trace events:
+ * GAME featureSize featureCount rows columns players - the header.
+ * SEED seed                                           - a new round, the deck was ordered by a shuffle of all the
+ *                                                       cards with new Random(seed) (see RoundPlan).
+ * KEY player slot / CLAIM player slot...              - input events (as they were acted upon).
+ * CARD slot card / REMOVE slot                        - a card was placed on / removed from the table.
+ * TOKEN player slot / UNTOKEN player slot             - a token was placed / removed.
+ * RULING player ruling                                - the dealer's ruling (1 point, 0 penalty, -1 not a set anymore).
+ * RESHUFFLE                                           - all the cards on the table are returned to the deck.
+ * SCORES score... / TABLE card...                     - the final scores and table ('-' for an empty slot).
+ */
+public class GameRecorder {
+
+    private final Logger logger;
+
+    /**
+     * The lines waiting to be written, and the line that stops the writer thread (compared by identity).
+     */
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    private static final String END = new String();
+
+    /**
+     * Writes the lines to the trace file (null if the recorder does not write a file).
+     */
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    public GameRecorder(Logger logger, Config config, String filename) throws IOException {
+        this.logger = logger;
+        BufferedWriter file = Files.newBufferedWriter(Paths.get(filename));
+        this.writer = new Thread(() -> writeLines(file), "game-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        write("GAME " + config.featureSize + " " + config.featureCount + " " + config.rows + " " + config.columns + " " + config.players);
+    }
+
+    /**
+     * A recorder that does not write a file (see write).
+     */
+    GameRecorder(Logger logger) {
+        this.logger = logger;
+        this.writer = null;
+    }
+
+    /**
+     * Records a line. Overridden by GameReplayer, which compares the lines with the recording instead.
+     */
+    void write(String line) {
+        if (!closed) lines.add(line);
+    }
+
+    /**
+     * The writer thread's loop: writes the lines until the recorder is closed, then closes the file.
+     */
+    private void writeLines(BufferedWriter file) {
+        boolean failed = false;
+        try {
+            for (String line; (line = lines.take()) != END; ) {
+                if (failed) continue;
+                try {
+                    file.write(line);
+                    file.newLine();
+                } catch (IOException e) {
+                    logger.severe("cannot write game record: " + e.getMessage());
+                    failed = true;
+                }
+            }
+        } catch (InterruptedException ignored) {}
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.severe("cannot close game record: " + e.getMessage());
+        }
+    }
+
+    void seed(long seed) {
+        write("SEED " + seed);
+    }
+
+    void key(int player, int slot) {
+        write("KEY " + player + " " + slot);
+    }
+
+    void claim(int player, int[] slots) {
+        StringBuilder sb = new StringBuilder("CLAIM ").append(player);
+        for (int slot : slots)
+            sb.append(' ').append(slot);
+        write(sb.toString());
+    }
+
+    void placeCard(int slot, int card) {
+        write("CARD " + slot + " " + card);
+    }
+
+    void removeCard(int slot) {
+        write("REMOVE " + slot);
+    }
+
+    void placeToken(int player, int slot) {
+        write("TOKEN " + player + " " + slot);
+    }
+
+    void removeToken(int player, int slot) {
+        write("UNTOKEN " + player + " " + slot);
+    }
+
+    void ruling(int player, int ruling) {
+        write("RULING " + player + " " + ruling);
+    }
+
+    void reshuffle() {
+        write("RESHUFFLE");
+    }
+
+    /**
+     * Records the final state of the game and closes the trace file.
+     */
+    synchronized void end(Player[] players, Integer[] slotToCard) {
+        StringBuilder sb = new StringBuilder("SCORES");
+        for (Player player : players)
+            sb.append(' ').append(player.score());
+        write(sb.toString());
+        sb = new StringBuilder("TABLE");
+        for (Integer card : slotToCard)
+            sb.append(' ').append(card == null ? "-" : card.toString());
+        write(sb.toString());
+        close();
+    }
+
+    /**
+     * Closes the trace file, once the lines recorded so far are written.
+     */
+    synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (writer == null) return;
+        lines.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Plays a game recorded by GameRecorder again at maximum speed (no delays and no user interface), from its inputs:
+ * the seeds of the rounds and the players' key presses and claims. The inputs are given to the table, and the dealer
+ * deals, rules the claims and collects the cards with its own code, at the points of the recording where it did (the
+ * order the game's threads happened to run in). Every table change, ruling, final score and final table slot the
+ * replay makes is compared with the recorded one; the recorded changes themselves are never applied.
+ * The replay rules all the claims with the whole table, so a game played with DealerRegions only replays if its
+ * rulings did not depend on the regions.
+ * Usage: GameReplayer trace-file
+ */
+public class GameReplayer {
+
+    private final Env env;
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+    private final GameRecorder recorder;
+
+    /**
+     * The lines the replay recorded that were not compared with the recording yet.
+     */
+    private final Deque<String> replayed = new ArrayDeque<>();
+
+    private int line;
+    private int events;
+
+    private GameReplayer(int featureSize, int featureCount, int rows, int columns, int playersCount) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        properties.setProperty("Rows", Integer.toString(rows));
+        properties.setProperty("Columns", Integer.toString(columns));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(playersCount));
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("VirtualClock", "True");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        recorder = new GameRecorder(logger) {
+            @Override
+            void write(String line) {
+                replayed.add(line);
+            }
+        };
+        dealer.setRecorder(recorder);
+    }
+
+    /**
+     * Replays a recorded game.
+     *
+     * @param filename - the trace file.
+     * @return - the number of events replayed.
+     * @throws IllegalStateException - if the replay does not match the recording.
+     */
+    public static int replay(String filename) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename))) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith("GAME "))
+                throw new IOException(filename + " is not a game record");
+            int[] game = Arrays.stream(header.substring(5).trim().split(" ")).mapToInt(Integer::parseInt).toArray();
+            GameReplayer replayer = new GameReplayer(game[0], game[1], game[2], game[3], game[4]);
+            replayer.line = 1;
+            for (String event; (event = reader.readLine()) != null; ) {
+                replayer.line++;
+                if (!event.isEmpty()) replayer.apply(event);
+            }
+            replayer.check(replayer.replayed.isEmpty(), "the replay went on with " + replayer.replayed.peek());
+            return replayer.events;
+        }
+    }
+
+    /**
+     * Compares a recorded event with the replay's next one, playing the step of the game that recorded it first if
+     * the replay has none left.
+     */
+    private void apply(String event) {
+        events++;
+        if (replayed.isEmpty()) play(event.split(" "));
+        check(!replayed.isEmpty(), "recorded " + event + " but the replay did not");
+        String made = replayed.poll();
+        check(event.equals(made), "recorded " + event + " but the replay made " + made);
+    }
+
+    /**
+     * Plays the step of the game that records the given event: an input, or the dealer's step.
+     */
+    private void play(String[] event) {
+        switch (event[0]) {
+            case "SEED":
+                dealer.startRound(dealer.planRound(Long.parseLong(event[1])).join());
+                break;
+            case "KEY": {
+                int player = Integer.parseInt(event[1]);
+                if (table.toggleToken(player, Integer.parseInt(event[2]), env.config.featureSize))
+                    dealer.notifyDealer(player);
+                break;
+            }
+            case "CLAIM": {
+                int player = Integer.parseInt(event[1]);
+                int[] slots = Arrays.stream(event, 2, event.length).mapToInt(Integer::parseInt).toArray();
+                if (table.placeTokens(player, slots))
+                    dealer.notifyDealer(player);
+                break;
+            }
+            case "RULING": {
+                int player = Integer.parseInt(event[1]);
+                if (Integer.parseInt(event[2]) < 0) {
+                    // a claim is withdrawn when its cards are removed
+                    dealer.removeCardsFromTable(0, env.config.tableSize);
+                    break;
+                }
+                Integer ruling = dealer.ruleNow(player);
+                check(ruling != null, "player " + (player + 1) + " was ruled without a pending claim");
+                if (ruling == 1) players[player].point();
+                else if (ruling == 0) players[player].penalty();
+                break;
+            }
+            case "REMOVE":
+                dealer.removeCardsFromTable(0, env.config.tableSize);
+                break;
+            case "CARD":
+                dealer.placeCardsOnTable(0, env.config.tableSize);
+                break;
+            case "RESHUFFLE":
+                dealer.removeAllCardsFromTable();
+                break;
+            case "SCORES":
+            case "TABLE":
+                recorder.end(players, table.slotToCard);
+                break;
+            case "TOKEN":
+            case "UNTOKEN":
+                break; // only made by the inputs
+            default:
+                throw new IllegalStateException("line " + line + ": unknown event " + event[0]);
+        }
+    }
+
+    private void check(boolean condition, String mismatch) {
+        if (!condition)
+            throw new IllegalStateException("line " + line + ": " + mismatch);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: GameReplayer <trace file>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        try {
+            int events = replay(args[0]);
+            System.out.println("replayed " + events + " events in " + (System.nanoTime() - start) / 1000000 + " ms: the game matches the recording.");
+        } catch (IllegalStateException e) {
+            System.out.println("replay mismatch: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
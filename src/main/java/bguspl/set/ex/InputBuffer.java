@@ -0,0 +1,220 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free ring buffer of key presses (slots) for a single player.
+ * Producers (the keyboard, the AI etc.) never block: when the buffer is full the overflow policy decides which
+ * input is lost. Only the player thread consumes from the buffer, and it sleeps while there is nothing to do.
+ *
+ * @inv capacity is a power of 2
+ */
+class InputBuffer {
+
+    /**
+     * What to do with a key press when the buffer is full.
+     */
+    enum OverflowPolicy {
+        DROP_OLDEST, // discard the oldest pending key press to make room for the new one
+        DROP_NEWEST, // discard the new key press
+        COALESCE     // a press of a pending slot cancels it out (two toggles are a no-op), a new press is dropped
+    }
+
+    /**
+     * Returned by poll when there are no pending key presses.
+     */
+    static final int NONE = -1;
+
+    /**
+     * Marks a cell whose key press was consumed or cancelled.
+     */
+    private static final int CANCELLED = -2;
+
+    private final OverflowPolicy policy;
+    private final int mask;
+
+    /**
+     * The cells of the ring and their sequence numbers (Vyukov's bounded queue): a cell is free for position p
+     * when its sequence is p, and holds the key press of position p when its sequence is p + 1.
+     */
+    private final AtomicIntegerArray values;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong(); // next position to consume
+    private final AtomicLong tail = new AtomicLong(); // next position to produce
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * The thread to wake up when a key press arrives.
+     */
+    private volatile Thread consumer;
+
+    InputBuffer(int capacity, OverflowPolicy policy) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.values = new AtomicIntegerArray(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            values.set(i, CANCELLED);
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Parses an overflow policy name, falling back to DROP_NEWEST.
+     */
+    static OverflowPolicy parsePolicy(String name) {
+        try {
+            return OverflowPolicy.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return OverflowPolicy.DROP_NEWEST;
+        }
+    }
+
+    /**
+     * Adds a key press without blocking, applying the overflow policy if the buffer is full. With COALESCE, a press
+     * of a slot that is still pending cancels the pending press whether or not the buffer is full.
+     *
+     * @param slot - the slot that was pressed.
+     * @return - true iff the key press was added.
+     */
+    boolean offer(int slot) {
+        if (policy == OverflowPolicy.COALESCE && cancel(slot)) {
+            coalesced.increment();
+            return false;
+        }
+        while (!tryOffer(slot)) {
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                if (poll() != NONE) dropped.increment();
+            } else {
+                dropped.increment();
+                return false;
+            }
+        }
+        wakeUp();
+        return true;
+    }
+
+    /**
+     * Removes the oldest pending key press without blocking.
+     *
+     * @return - the slot of the key press, or NONE if there is none.
+     */
+    int poll() {
+        while (true) {
+            int slot = tryPoll();
+            if (slot != CANCELLED) return slot;
+        }
+    }
+
+    /**
+     * Waits until a key press may be available (or wakeUp was called). May return spuriously.
+     *
+     * @throws InterruptedException - if the waiting thread was interrupted.
+     */
+    void await() throws InterruptedException {
+        consumer = Thread.currentThread();
+        if (isEmpty()) LockSupport.park(this);
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+
+    /**
+     * Wakes up the consumer thread (if it's waiting).
+     */
+    void wakeUp() {
+        Thread thread = consumer;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Registers the thread that consumes the key presses (should be called before the first poll).
+     */
+    void setConsumer(Thread thread) {
+        consumer = thread;
+    }
+
+    /**
+     * Discards all the pending key presses.
+     */
+    void clear() {
+        while (poll() != NONE) ;
+    }
+
+    /**
+     * @return - the number of pending key presses (including cancelled ones that were not polled yet).
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    private boolean tryOffer(int slot) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    values.set(index, slot);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private int tryPoll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    int slot = values.getAndSet(index, CANCELLED);
+                    sequences.set(index, position + mask + 1);
+                    return slot;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return NONE; // empty
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Cancels one pending key press of the given slot.
+     *
+     * @return - true iff a pending key press was cancelled.
+     */
+    private boolean cancel(int slot) {
+        for (long position = head.get(); position < tail.get(); position++)
+            if (values.compareAndSet((int) position & mask, slot, CANCELLED))
+                return true;
+        return false;
+    }
+}
@@ -8,9 +8,11 @@ import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.LinkedList;
 
 import bguspl.set.Env;
+import bguspl.set.GameMetrics;
 
 /**
  * This class manages the players' threads and data
@@ -36,7 +38,7 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The thread representing the current player (null when it is not running).
      */
     private Thread playerThread;
 
@@ -45,6 +47,23 @@ public class Player implements Runnable {
      */
     private Thread aiThread;
 
+    /**
+     * Generates the AI's claims when it has no thread of its own (on a game with an executor, see nextAiClaim).
+     */
+    private Random aiRandom;
+
+    /**
+     * Guards the thread fields, so a thread of a shared executor is never interrupted after it left the player.
+     */
+    private final Object threadsLock = new Object();
+
+    /**
+     * Released when the player thread / the AI thread finishes (instead of joining the threads, since the threads
+     * of a shared executor outlive the player).
+     */
+    private final CountDownLatch playerDone = new CountDownLatch(1);
+    private final CountDownLatch aiDone = new CountDownLatch(1);
+
     /**
      * True iff the player is human (not a computer player).
      */
@@ -55,18 +74,49 @@ public class Player implements Runnable {
      */
     private volatile boolean terminate;
 
+    private Dealer dealer;
+
     /**
-     * The current score of the player.
+     * The pending key presses of the player (never blocks the pressing thread).
      */
-    private int score;
+    private final InputBuffer inputs;
 
-    private Dealer dealer;
+    /**
+     * A whole selection submitted via claimSet, and the time it was submitted.
+     */
+    private static class Claim {
+        final int[] slots;
+        final long nanos;
+
+        Claim(int[] slots) {
+            this.slots = slots.clone();
+            this.nanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Whole selections submitted via claimSet (at most one pending at a time).
+     */
+    private final BlockingQueue<Claim> claimsQueue;
+
+    /**
+     * The time of the last key press, the time the player was last ready to claim (after its previous ruling and
+     * freeze), and the start of the claim the player waits for a ruling on: the later of the claim's last key press
+     * (or claimSet call) and the time the player was ready (see GameMetrics.claimStage).
+     */
+    private volatile long lastKeyNanos;
+    private long readyNanos;
+    private volatile long claimNanos;
 
-    private BlockingQueue<Integer> actionsQueue;
     private int rulling = -2;
     private static final int SLEEP_DURATION = 1000;
     private volatile boolean terminateAi;
 
+    /**
+     * True iff flight recorder events are created (see GameEvents).
+     */
+    private final boolean events;
+
     /**
      * The class constructor.
      *
@@ -82,7 +132,11 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        this.actionsQueue = new ArrayBlockingQueue<>(env.config.featureSize);
+        this.inputs = new InputBuffer(env.config.featureSize, InputBuffer.parsePolicy(env.config.inputOverflowPolicy));
+        this.claimsQueue = new ArrayBlockingQueue<>(1);
+        this.events = env.config.jfrEvents;
+        env.metrics.pendingInputs(id, inputs::size);
+        env.metrics.inputCounters(id, inputs::dropped, inputs::coalesced);
     }
 
     /**
@@ -90,106 +144,195 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
+        synchronized(threadsLock){
+            playerThread = Thread.currentThread();
+        }
+        inputs.setConsumer(playerThread);
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
 
         while (!terminate) {
             try {
-                Integer slot = this.actionsQueue.take();
-                if(table.tokensOnSlot.get(slot).contains(id)){
-                    table.removeToken(id, slot);
-                }
-                else{
-                    if(numTokensPlaced() != env.config.featureSize){
-                        this.table.placeToken(id, slot);
-                        if(numTokensPlaced() == env.config.featureSize){
-                            //tell dealer to check
-                            synchronized(this){
-                                // Wait for notification from Dealer
-                                dealer.notifyDealer(id);
-                                this.wait();
-                                // Perform action upon notification
-                                if(this.rulling == 1){
-                                    point();
-                                } else if(this.rulling == 0){
-                                    penalty();
-                                } else if(rulling == -2){
-                                    env.logger.info("thread " + Thread.currentThread().getName() + " woke up for no reason.");
-                                }
-                                if(human){
-                                    actionsQueue.clear();
-                                }
-                                // Reset the notification flag
-                                this.rulling = -2;
-                            }
-                        }
+                Claim claim = claimsQueue.poll();
+                if(claim != null){
+                    if (aiRandom != null) nextAiClaim();
+                    if(table.placeTokens(id, claim.slots)){
+                        claimNanos = Math.max(claim.nanos, readyNanos);
+                        env.metrics.claimStage(GameMetrics.TO_TOKEN, claimNanos);
+                        waitForRulling();
                     }
+                    continue;
+                }
+                int slot = inputs.poll();
+                if(slot == InputBuffer.NONE){
+                    inputs.await();
+                }
+                else if(table.toggleToken(id, slot, env.config.featureSize)){
+                    claimNanos = Math.max(lastKeyNanos, readyNanos);
+                    env.metrics.claimStage(GameMetrics.TO_TOKEN, claimNanos);
+                    waitForRulling();
                 }
             } catch (InterruptedException ignored) {}
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        if (!human) try { aiDone.await(); } catch (InterruptedException ignored) {}
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        synchronized(threadsLock){
+            playerThread = null;
+        }
+        playerDone.countDown();
+    }
+
+    /**
+     * Tells the dealer to check the player's set, waits for the rulling and acts upon it.
+     * Package-private for the handoff benchmark, which plays the player's side of the handshake.
+     */
+    void waitForRulling() throws InterruptedException {
+        synchronized(this){
+            // Wait for notification from Dealer
+            env.metrics.claimStage(GameMetrics.TO_NOTIFY, claimNanos);
+            GameEvents.RulingWait event = events ? GameEvents.begin(new GameEvents.RulingWait()) : null;
+            dealer.notifyDealer(id);
+            this.wait();
+            if (event != null) event.commit(id, rulling);
+            // Perform action upon notification
+            if(this.rulling == 1){
+                point();
+            } else if(this.rulling == 0){
+                penalty();
+            } else if(rulling == -2){
+                env.logger.info("thread " + Thread.currentThread().getName() + " woke up for no reason.");
+            }
+            if(human){
+                inputs.clear();
+            }
+            // Reset the notification flag
+            this.rulling = -2;
+            readyNanos = System.nanoTime();
+        }
     }
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * claims of random slots. If a claim is still pending, the thread waits until it is handled.
+     * On a game with an executor, the player thread generates the claims instead (see nextAiClaim).
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        synchronized(dealer.threadsCreated){
+            dealer.threadsCreated.push(this);
+            env.logger.info(env.executor != null ? "computer-" + id + " claims on the player thread."
+                    : "thread computer-" + id + " created.");
+        }
+        if (env.executor != null) {
+            aiRandom = new Random();
+            nextAiClaim();
+            return;
+        }
+        Runnable ai = () -> {
+            synchronized(threadsLock){
+                aiThread = Thread.currentThread();
+            }
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
             Random rnd = new Random();
+            int[] slots = new int[env.config.featureSize];
             while (!terminateAi) {
-                int randomSlot = rnd.nextInt(env.config.tableSize);
-                keyPressed(randomSlot);
+                randomSlots(rnd, slots);
+                claimSet(slots);
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        synchronized(dealer.threadsCreated){
-            dealer.threadsCreated.push(this);
-            env.logger.info("thread " + aiThread.getName() + " created.");
+            synchronized(threadsLock){
+                aiThread = null;
+            }
+            aiDone.countDown();
+        };
+        new Thread(ai, "computer-" + id).start();
+    }
+
+    /**
+     * Submits the AI's next claim. On a game with an executor, the AI does not hold a thread of its own waiting for
+     * room for its next claim: the player thread submits it as soon as it takes the previous one.
+     */
+    private void nextAiClaim() {
+        if (terminateAi) return;
+        int[] slots = new int[env.config.featureSize];
+        randomSlots(aiRandom, slots);
+        offerClaim(slots);
+    }
+
+    /**
+     * Fills a claim with distinct random slots.
+     */
+    private void randomSlots(Random rnd, int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = rnd.nextInt(env.config.tableSize);
+            for (int j = 0; j < i; j++)
+                if (slots[j] == slots[i]) {
+                    i--;
+                    break;
+                }
         }
-        aiThread.start();
     }
 
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-        try {        
-        if(!human){
-            if(!this.terminateAi){
-                this.terminateAi=true;
-                this.aiThread.interrupt();
-                this.aiThread.join();
-            }
-            else{
-                this.terminate=true;
-                this.playerThread.interrupt();
-                this.playerThread.join();
+        try {
+        if(!human && !this.terminateAi){
+            this.terminateAi=true;
+            if (env.executor != null) aiDone.countDown(); // the AI has no thread
+            synchronized(threadsLock){
+                if (aiThread != null) aiThread.interrupt();
             }
+            aiDone.await();
         }
-        else{
-            this.terminate=true;
-            this.playerThread.interrupt();
-            this.playerThread.join();
+        // the player stops with its AI, in case the game ends before the AI is created
+        this.terminate=true;
+        synchronized(threadsLock){
+            if (playerThread != null) playerThread.interrupt();
         }
+        playerDone.await();
         } catch (InterruptedException ignored) {}
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. Never blocks: if too many key presses are pending, the
+     * configured overflow policy decides which one is lost.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        lastKeyNanos = System.nanoTime();
+        inputs.offer(slot);
+    }
+
+    /**
+     * Submits a whole selection of slots as a claim: the tokens are placed in a single table operation and the
+     * dealer is notified right away (instead of one key press per token).
+     * If a previous claim is still pending, waits until it is handled.
+     *
+     * @param slots - the slots of the claimed set.
+     */
+    public void claimSet(int[] slots) {
+        if (slots.length != env.config.featureSize) return;
         try {
-            actionsQueue.put(slot);
+            claimsQueue.put(new Claim(slots));
+            inputs.wakeUp();
         } catch (InterruptedException ignored) {}
     }
 
+    /**
+     * Submits a whole selection of slots as a claim (see claimSet) without blocking.
+     *
+     * @param slots - the slots of the claimed set.
+     * @return - true iff the claim was submitted (false if a previous claim is still pending).
+     */
+    public boolean offerClaim(int[] slots) {
+        if (slots.length != env.config.featureSize || !claimsQueue.offer(new Claim(slots))) return false;
+        inputs.wakeUp();
+        return true;
+    }
+
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -198,12 +341,13 @@ public class Player implements Runnable {
      */
     public void point() {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
-        env.ui.setScore(id, ++score);
+        env.ui.setScore(id, env.scoreboard.point(id));
         long freezeTimeLeft = env.config.pointFreezeMillis;
+        env.metrics.frozen(id, freezeTimeLeft);
         try {
             while(freezeTimeLeft>=0){
                 env.ui.setFreeze(id, freezeTimeLeft);
-                Thread.sleep(SLEEP_DURATION);
+                env.clock.sleep(SLEEP_DURATION);
                 freezeTimeLeft -= SLEEP_DURATION;
             }
             env.ui.setFreeze(id, freezeTimeLeft);
@@ -215,29 +359,30 @@ public class Player implements Runnable {
      */
     public void penalty() {
         long freezeTimeLeft = env.config.penaltyFreezeMillis;
+        env.metrics.frozen(id, freezeTimeLeft);
         try {
             while(freezeTimeLeft>0){
                 env.ui.setFreeze(id, freezeTimeLeft);
-                Thread.sleep(SLEEP_DURATION);
+                env.clock.sleep(SLEEP_DURATION);
                 freezeTimeLeft -= SLEEP_DURATION;
             }
             env.ui.setFreeze(id, freezeTimeLeft);
         } catch (InterruptedException e) {}
     }
 
-    // Returns the player's score
+    // Returns the player's score (kept by the game's scoreboard)
     public int score() {
-        return score;
+        return env.scoreboard.score(id);
     }
 
-    // Creates a player thread and adds it to the logger
+    // Creates a player thread (or runs the player on the game's executor, if it has one) and adds it to the logger
     public void createThread() {
-        this.playerThread = new Thread(this);
         synchronized(dealer.threadsCreated){
             dealer.threadsCreated.push(this);
-            env.logger.info("thread " + playerThread.getName() + " created.");
+            env.logger.info("thread player-" + id + " created.");
         }
-        this.playerThread.start();
+        if (env.executor != null) env.executor.execute(this);
+        else new Thread(this, "player-" + id).start();
     }
 
     // Used by dealer to notify the player about his set
@@ -251,6 +396,16 @@ public class Player implements Runnable {
         }
     }
 
+    // Returns the start time of the claim the player waits for a ruling on (see GameMetrics.claimStage)
+    long claimNanos() {
+        return claimNanos;
+    }
+
+    // Returns true iff the player is human (i.e. its input is not generated by an AI thread)
+    public boolean isHuman() {
+        return human;
+    }
+
     // Returns the player's id
     public int getId(){
         return id;
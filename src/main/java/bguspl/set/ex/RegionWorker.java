@@ -0,0 +1,88 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A dealer worker of a region of the table (a range of rows, see DealerRegions): it rules the claims whose tokens
+ * are all in its region, and removes and deals the cards of its region, so the claims of different regions are ruled
+ * in parallel.
+ * The worker holds its region's lock while it changes the region. The dealer takes the locks of all the regions (in
+ * order) to rule the claims that span regions and between rounds, so the global deck and the rulings stay consistent.
+ *
+ * The table itself is not split: every table operation (the ruling, and removing and dealing the cards) still runs
+ * under the Table monitor, so the workers take turns on the table. What runs in parallel is the rest of each ruling,
+ * i.e. taking the claim from the queue, waking the player, the metrics and the recorder. The ruling rate is therefore
+ * bounded by the time the table is held per claim (see GameMetrics.getTableHoldNanos), however many regions there are.
+ */
+class RegionWorker implements Runnable {
+
+    private final Dealer dealer;
+
+    /**
+     * The index of the region, and its slots: from first (inclusive) to end (exclusive).
+     */
+    final int index;
+    final int first;
+    final int end;
+
+    /**
+     * Held while the region is changed.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The ids of the players whose claims are waiting for a ruling.
+     */
+    final BlockingQueue<Integer> claims = new LinkedBlockingQueue<>();
+
+    private volatile boolean stopped;
+
+    /**
+     * The thread of the worker (null when it is not running), and released when the worker finishes.
+     */
+    private Thread thread;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    RegionWorker(Dealer dealer, int index, int first, int end) {
+        this.dealer = dealer;
+        this.index = index;
+        this.first = first;
+        this.end = end;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            thread = Thread.currentThread();
+        }
+        while (!stopped) {
+            try {
+                int player = claims.take();
+                lock.lock();
+                try {
+                    dealer.ruleInRegion(player, this);
+                } finally {
+                    lock.unlock();
+                }
+            } catch (InterruptedException ignored) {}
+        }
+        synchronized (this) {
+            thread = null;
+        }
+        done.countDown();
+    }
+
+    /**
+     * Stops the worker and waits until it finishes.
+     */
+    void stop() throws InterruptedException {
+        stopped = true;
+        synchronized (this) {
+            if (thread != null) thread.interrupt();
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,143 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The next round of a game, prepared in the background (on the game's executor, if it has one) while the current
+ * round is still played: the order of the deck, the opening layout and a few sets among the cards that can still be
+ * dealt, so the round transition only has to swap the layout onto the table.
+ * The order is a shuffle of all the cards of the game, and the deck is dealt in that order (skipping the cards that
+ * are no longer in it), so it does not matter which cards leave the game before the transition. The cards that can
+ * be dealt at the transition are a subset of the cards the plan was prepared from, so the layout (the first cards of
+ * the order among them) is still the deal if none of its cards left the game, if there was no set among them, there
+ * is none at the transition either, and if one of the sets is still whole, there is one.
+ */
+class RoundPlan {
+
+    /**
+     * The number of disjoint sets looked for: one of them is likely to still be whole at the transition.
+     */
+    private static final int WITNESSES = 8;
+
+    /**
+     * The seed of the shuffle.
+     */
+    final long seed;
+
+    /**
+     * All the cards of the game, shuffled.
+     */
+    private final int[] order;
+
+    /**
+     * The cards of the opening layout, layout[i] in slot i.
+     */
+    private final int[] layout;
+
+    /**
+     * Disjoint sets among the cards the plan was prepared from (empty if there are none).
+     */
+    private final List<int[]> witnesses;
+
+    private RoundPlan(long seed, int[] order, int[] layout, List<int[]> witnesses) {
+        this.seed = seed;
+        this.order = order;
+        this.layout = layout;
+        this.witnesses = witnesses;
+    }
+
+    /**
+     * Starts preparing a round in the background: on the game's executor, or without one, on a thread of its own.
+     *
+     * @param seed  - the seed of the shuffle.
+     * @param cards - the cards that can be dealt in the round (a copy, no longer used by the caller).
+     * @return - the plan, when it is ready.
+     */
+    static CompletableFuture<RoundPlan> prepare(Env env, long seed, List<Integer> cards) {
+        Executor executor = env.executor != null ? env.executor : task -> new Thread(task, "round-planner").start();
+        return CompletableFuture.supplyAsync(() -> {
+            GameEvents.FindSets event = env.config.jfrEvents ? GameEvents.begin(new GameEvents.FindSets()) : null;
+            List<Integer> rest = new ArrayList<>(cards);
+            List<int[]> witnesses = new ArrayList<>();
+            while (witnesses.size() < WITNESSES) {
+                List<int[]> found = env.util.findSets(rest, 1);
+                if (found.isEmpty()) break;
+                witnesses.add(found.get(0));
+                for (int card : found.get(0))
+                    rest.remove(Integer.valueOf(card));
+            }
+            if (event != null) event.commit(cards.size(), witnesses.size());
+            int[] order = shuffle(seed, env.config.deckSize);
+            boolean[] inDeck = inDeck(cards, env.config.deckSize);
+            int[] layout = Arrays.stream(order).filter(card -> inDeck[card]).limit(env.config.tableSize).toArray();
+            return new RoundPlan(seed, order, layout, witnesses);
+        }, executor);
+    }
+
+    /**
+     * @return - all the cards of the game, shuffled with new Random(seed).
+     */
+    private static int[] shuffle(long seed, int deckSize) {
+        List<Integer> cards = IntStream.range(0, deckSize).boxed().collect(Collectors.toCollection(ArrayList::new));
+        Collections.shuffle(cards, new Random(seed));
+        return cards.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Orders the deck for dealing and takes the opening layout off its top: the plan's layout if all of its cards are
+     * still in the deck, or else the first cards of the new order.
+     *
+     * @param tableSize - the number of slots of the table.
+     * @return - the cards of the opening layout, layout[i] in slot i.
+     * @pre - the table is empty.
+     */
+    int[] deal(List<Integer> deck, int tableSize) {
+        boolean[] inDeck = inDeck(deck, order.length);
+        deck.clear();
+        for (int card : order)
+            if (inDeck[card])
+                deck.add(card);
+        boolean whole = true;
+        for (int card : layout)
+            whole &= inDeck[card];
+        int[] dealt = whole ? layout : deck.stream().limit(tableSize).mapToInt(Integer::intValue).toArray();
+        deck.subList(0, dealt.length).clear();
+        return dealt;
+    }
+
+    /**
+     * @return - whether each card of the game is in the deck.
+     */
+    static boolean[] inDeck(List<Integer> deck, int deckSize) {
+        boolean[] inDeck = new boolean[deckSize];
+        for (int card : deck)
+            inDeck[card] = true;
+        return inDeck;
+    }
+
+    /**
+     * @param inDeck - whether each card is in the deck.
+     * @return - true iff one of the sets is whole in the deck, false if there were no sets at all, and null if all
+     * the sets were broken (the deck has to be searched).
+     */
+    Boolean solvable(boolean[] inDeck) {
+        if (witnesses.isEmpty()) return false;
+        for (int[] set : witnesses) {
+            boolean whole = true;
+            for (int card : set)
+                whole &= inDeck[card];
+            if (whole) return true;
+        }
+        return null;
+    }
+}
@@ -1,17 +1,24 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameMetrics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.LinkedList;
 
 
 /**
  * This class contains the data that is visible to the player.
+ * With Metrics or TableProfiling, the time the table's monitor is waited for and held is counted in the game metrics
+ * (and, with TableProfiling, per thread and method: a method called with the monitor already held counts towards the
+ * method that acquired it). Otherwise the operations only take the monitor, and the ones called for every key press
+ * and claim run without allocating a lambda for it.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
@@ -35,6 +42,16 @@ public class Table {
     protected final List<LinkedList<Integer>> tokensOnSlot;
     protected final Boolean[] shouldRemoveCard;
 
+    /**
+     * Records the table changes (null if the game is not recorded).
+     */
+    volatile GameRecorder recorder;
+
+    /**
+     * True iff the table operations are timed (see the class comment).
+     */
+    final boolean timed;
+
 
     /**
      * Constructor for testing.
@@ -53,6 +70,7 @@ public class Table {
         }
         this.shouldRemoveCard = new Boolean[env.config.tableSize];
         Arrays.fill(shouldRemoveCard, false);
+        this.timed = env.config.metrics || env.config.tableProfiling;
     }
 
 
@@ -66,6 +84,41 @@ public class Table {
         this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
     }
 
+    /**
+     * Runs a table operation holding the table's monitor, and counts the time the monitor was waited for and held in
+     * the game metrics (see the class comment).
+     *
+     * @param method - the name of the operation.
+     * @param body   - the operation.
+     * @return - the result of the operation.
+     */
+    <T> T locked(String method, Supplier<T> body) {
+        if (!timed) {
+            synchronized (this) {
+                return body.get();
+            }
+        }
+        long requested = Thread.holdsLock(this) ? GameMetrics.REENTRANT : System.nanoTime();
+        synchronized (this) {
+            long acquired = env.metrics.tableAcquired(method, requested);
+            try {
+                return body.get();
+            } finally {
+                env.metrics.tableReleased(acquired);
+            }
+        }
+    }
+
+    /**
+     * Runs a table operation that has no result, like locked(String, Supplier).
+     */
+    void locked(String method, Runnable body) {
+        locked(method, () -> {
+            body.run();
+            return null;
+        });
+    }
+
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
@@ -99,32 +152,76 @@ public class Table {
      *
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+    public void placeCard(int card, int slot) {
+        locked("placeCard", () -> {
+            try {
+                env.clock.sleep(env.config.tableDelayMillis);
+            } catch (InterruptedException ignored) {}
+
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            if (recorder != null) recorder.placeCard(slot, card);
+
+            env.ui.placeCard(card, slot);
+        });
+    }
+
+    /**
+     * Places cards in several grid slots in a single table operation (e.g. refilling the slots of a set), with the
+     * table delay before each card.
+     * @param slots - the slots in which the cards should be placed.
+     * @param cards - the card ids to place, cards[i] in slots[i].
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public void placeCards(int[] slots, int[] cards) {
+        locked("placeCards", () -> place(slots, cards, true));
+    }
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+    /**
+     * Deals a new round's opening layout in a single table operation, with a single table delay for the whole deal.
+     * @param cards - the card ids to place, cards[i] in slot i.
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public void placeLayout(int[] cards) {
+        int[] slots = IntStream.range(0, cards.length).toArray();
+        locked("placeLayout", () -> place(slots, cards, false));
+    }
 
-        env.ui.placeCard(card, slot);
+    // Places the cards, cards[i] in slots[i], with the table delay before each card or only before the first one
+    private void place(int[] slots, int[] cards, boolean delayEach) {
+        for (int i = 0; i < slots.length; i++) {
+            if (i == 0 || delayEach) {
+                try {
+                    env.clock.sleep(env.config.tableDelayMillis);
+                } catch (InterruptedException ignored) {}
+            }
+            cardToSlot[cards[i]] = slots[i];
+            slotToCard[slots[i]] = cards[i];
+            if (recorder != null) recorder.placeCard(slots[i], cards[i]);
+            env.ui.placeCard(cards[i], slots[i]);
+        }
     }
 
     /**
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
-    public synchronized void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+    public void removeCard(int slot) {
+        locked("removeCard", () -> {
+            try {
+                env.clock.sleep(env.config.tableDelayMillis);
+            } catch (InterruptedException ignored) {}
 
-        cardToSlot[slotToCard[slot]] = null;
-        slotToCard[slot] = null;
-        tokensOnSlot.get(slot).clear();
-        shouldRemoveCard[slot] = false;
-        env.ui.removeTokens(slot);
-        env.ui.removeCard(slot);
+            cardToSlot[slotToCard[slot]] = null;
+            slotToCard[slot] = null;
+            tokensOnSlot.get(slot).clear();
+            shouldRemoveCard[slot] = false;
+            if (recorder != null) recorder.removeCard(slot);
+            env.ui.removeTokens(slot);
+            env.ui.removeCard(slot);
+        });
     }
 
     /**
@@ -132,21 +229,118 @@ public class Table {
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    public synchronized void placeToken(int player, int slot) {
+    public void placeToken(int player, int slot) {
+        if (timed) {
+            locked("placeToken", () -> addToken(player, slot));
+            return;
+        }
+        synchronized (this) {
+            addToken(player, slot);
+        }
+    }
+
+    // The body of placeToken, called with the monitor held
+    private void addToken(int player, int slot) {
         if(slotToCard[slot] != null){
             tokensOnSlot.get(slot).add(player);
+            if (recorder != null) recorder.placeToken(player, slot);
             env.ui.placeToken(player, slot);
         }
     }
 
+    /**
+     * Acts upon a player's key press: removes the player's token from the grid slot if there is one, and otherwise
+     * places one, unless the slot is empty or the player already has a whole set of tokens on the table.
+     * The press is recorded in the same table operation, so a replay applies it to the same table.
+     * @param player  - the player who pressed the key.
+     * @param slot    - the slot corresponding to the key pressed.
+     * @param setSize - the number of tokens in a set.
+     * @return - true iff the press placed the last token of a set.
+     */
+    public boolean toggleToken(int player, int slot, int setSize) {
+        if (timed) return locked("toggleToken", () -> toggle(player, slot, setSize));
+        synchronized (this) {
+            return toggle(player, slot, setSize);
+        }
+    }
+
+    // The body of toggleToken, called with the monitor held
+    private boolean toggle(int player, int slot, int setSize) {
+        if (recorder != null) recorder.key(player, slot);
+        Integer Iplayer = player;
+        if (tokensOnSlot.get(slot).contains(Iplayer)) {
+            dropToken(player, slot);
+            return false;
+        }
+        int tokens = 0;
+        for (LinkedList<Integer> slotTokens : tokensOnSlot)
+            if (slotTokens.contains(Iplayer))
+                tokens++;
+        if (tokens == setSize || slotToCard[slot] == null) return false;
+        addToken(player, slot);
+        return tokens + 1 == setSize;
+    }
+
+    /**
+     * Places a whole selection of player tokens on the table at once (a single table operation per claim).
+     * The player's previous tokens are removed first.
+     * @param player - the player the tokens belong to.
+     * @param slots  - the slots on which to place the tokens.
+     * @return - true iff the selection was placed (i.e. every slot holds a card and no slot is selected twice).
+     *
+     * @post - on success, the player's tokens are exactly on the given slots, otherwise the table is unchanged.
+     */
+    public boolean placeTokens(int player, int[] slots) {
+        if (timed) return locked("placeTokens", () -> setTokens(player, slots));
+        synchronized (this) {
+            return setTokens(player, slots);
+        }
+    }
+
+    // The body of placeTokens, called with the monitor held
+    private boolean setTokens(int player, int[] slots) {
+        if (recorder != null) recorder.claim(player, slots);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] < 0 || slots[i] >= slotToCard.length || slotToCard[slots[i]] == null)
+                return false;
+            for (int j = 0; j < i; j++)
+                if (slots[j] == slots[i])
+                    return false;
+        }
+
+        Integer Iplayer = player;
+        for (int slot = 0; slot < tokensOnSlot.size(); slot++) {
+            if (tokensOnSlot.get(slot).remove(Iplayer) && recorder != null)
+                recorder.removeToken(player, slot);
+        }
+        for (int slot : slots) {
+            tokensOnSlot.get(slot).add(player);
+            if (recorder != null) recorder.placeToken(player, slot);
+        }
+        env.ui.placeTokens(player, slots);
+        return true;
+    }
+
     /**
      * Removes a token of a player from a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot from which to remove the token.
      */
-    public synchronized void removeToken(int player, int slot) {
+    public void removeToken(int player, int slot) {
+        if (timed) {
+            locked("removeToken", () -> dropToken(player, slot));
+            return;
+        }
+        synchronized (this) {
+            dropToken(player, slot);
+        }
+    }
+
+    // The body of removeToken, called with the monitor held
+    private void dropToken(int player, int slot) {
         Integer Iplayer = player;
-        tokensOnSlot.get(slot).remove(Iplayer);
+        if (tokensOnSlot.get(slot).remove(Iplayer) && recorder != null)
+            recorder.removeToken(player, slot);
         env.ui.removeToken(player, slot);
     }
 }
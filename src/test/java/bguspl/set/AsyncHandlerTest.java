@@ -0,0 +1,126 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncHandlerTest {
+
+    /**
+     * Keeps the messages it is given, and can hold the writer thread in publish until it is released.
+     */
+    private static class ListHandler extends Handler {
+        final List<String> messages = new ArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile boolean closed;
+
+        ListHandler(boolean hold) {
+            release = new CountDownLatch(hold ? 1 : 0);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            synchronized (messages) {
+                messages.add(record.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        List<String> messages() {
+            synchronized (messages) {
+                return new ArrayList<>(messages);
+            }
+        }
+    }
+
+    private static LogRecord record(int i) {
+        return new LogRecord(Level.INFO, "record " + i);
+    }
+
+    @Test
+    void close_WritesEveryPublishedRecord() {
+        ListHandler list = new ListHandler(false);
+        AsyncHandler handler = new AsyncHandler(list, 1000);
+        for (int i = 0; i < 100; i++)
+            handler.publish(record(i));
+        handler.flush();
+        assertEquals(100, list.messages().size());
+
+        for (int i = 100; i < 105; i++)
+            handler.publish(record(i));
+        handler.close();
+        assertTrue(list.closed);
+        handler.publish(record(105));
+
+        // in order, and nothing after the close
+        List<String> messages = list.messages();
+        assertEquals(105, messages.size());
+        for (int i = 0; i < messages.size(); i++)
+            assertEquals("record " + i, messages.get(i));
+        assertEquals(0L, handler.dropped());
+    }
+
+    @Test
+    void close_WhilePublishing() throws InterruptedException {
+        ListHandler list = new ListHandler(false);
+        AsyncHandler handler = new AsyncHandler(list, 1 << 20);
+        CountDownLatch started = new CountDownLatch(4);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                handler.publish(record(0));
+                started.countDown();
+                for (int i = 1; i < 100000; i++)
+                    handler.publish(record(i));
+            });
+            threads[t].start();
+        }
+        started.await();
+        handler.close();
+        for (Thread thread : threads)
+            thread.join();
+
+        // every record taken before the close was written
+        assertTrue(handler.published() > 0);
+        assertEquals(handler.published(), (long) list.messages().size());
+    }
+
+    @Test
+    void publish_DropsWhenTheBufferIsFull() throws InterruptedException {
+        ListHandler list = new ListHandler(true);
+        AsyncHandler handler = new AsyncHandler(list, 2);
+        handler.publish(record(0));
+        // the writer thread holds the first record, the next two wait in the buffer and the rest are dropped
+        list.entered.await();
+        for (int i = 1; i < 6; i++)
+            handler.publish(record(i));
+        assertEquals(3L, handler.dropped());
+
+        list.release.countDown();
+        handler.close();
+        List<String> messages = list.messages();
+        assertEquals(4, messages.size());
+        assertEquals("record 2", messages.get(2));
+        assertEquals("3 log records were dropped (log buffer was full).", messages.get(3));
+    }
+}
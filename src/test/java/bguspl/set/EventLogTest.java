@@ -0,0 +1,101 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    Path directory;
+    String prefix;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-log");
+        prefix = directory.resolve("events").toString();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Writes 7 events to files of at most 3 records each.
+     */
+    private void writeEvents() {
+        EventLog log = new EventLog(Logger.getAnonymousLogger(), null, prefix,
+                EventLog.HEADER_SIZE + 3 * EventLog.RECORD_SIZE, false);
+        log.placeCard(12, 0);
+        log.placeToken(1, 0);
+        log.placeTokens(2, new int[]{0, 3});
+        log.setScore(2, 1);
+        log.removeCard(0);
+        log.announceWinner(new int[]{2});
+        log.close();
+    }
+
+    /**
+     * @return - the decoded events without their times.
+     */
+    private static List<String> decode(InputStream in, int expected) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(expected, EventLogDecoder.decode(in, "test", new PrintStream(bytes, true)));
+        List<String> events = new ArrayList<>();
+        for (String line : bytes.toString().split(System.lineSeparator()))
+            if (!line.isEmpty()) events.add(line.substring(line.indexOf(' ') + 1));
+        return events;
+    }
+
+    @Test
+    void decode_RotatedFiles() throws IOException {
+        writeEvents();
+
+        List<String> events = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            Path file = directory.resolve("events-" + index + ".bin");
+            assertTrue(Files.exists(file));
+            try (InputStream in = Files.newInputStream(file)) {
+                events.addAll(decode(in, index < 2 ? 3 : 1));
+            }
+        }
+        assertEquals(Arrays.asList("PLACE_CARD slot=0 card=12", "PLACE_TOKEN player=2 slot=0",
+                "PLACE_TOKENS player=3 slot=0", "PLACE_TOKENS player=3 slot=3", "SCORE player=3 value=1",
+                "REMOVE_CARD slot=0", "WINNER player=3"), events);
+    }
+
+    @Test
+    void decode_TruncatedRecord() throws IOException {
+        writeEvents();
+        byte[] file = Files.readAllBytes(directory.resolve("events-0.bin"));
+
+        // a crash in the middle of the third record
+        byte[] truncated = Arrays.copyOf(file, file.length - EventLog.RECORD_SIZE / 2);
+        assertEquals(2, decode(new ByteArrayInputStream(truncated), -3).size());
+    }
+
+    @Test
+    void decode_EmptyFile() throws IOException {
+        assertEquals(0, decode(new ByteArrayInputStream(new byte[0]), 0).size());
+    }
+}
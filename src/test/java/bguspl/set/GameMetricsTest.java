@@ -0,0 +1,135 @@
+package bguspl.set;
+
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameMetricsTest {
+
+    private static Logger logger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    @Test
+    void counters_SumTheGameEvents() {
+        GameMetrics metrics = new GameMetrics(3);
+        metrics.point();
+        metrics.point();
+        metrics.penalty(1);
+        metrics.penalty(1);
+        metrics.penalty(2);
+        metrics.staleClaim();
+        metrics.reshuffle();
+        metrics.frozen(0, 1000);
+        metrics.frozen(0, 3000);
+        metrics.claimRuled(2, 0);
+        metrics.dealerIteration(10);
+        metrics.dealerIteration(30);
+
+        assertEquals(2L, metrics.getPoints());
+        assertEquals(3L, metrics.getPenalties());
+        assertEquals(1L, metrics.getStaleClaims());
+        assertEquals(1L, metrics.getReshuffles());
+        assertArrayEquals(new long[]{0, 2, 1}, metrics.getPlayerPenalties());
+        assertArrayEquals(new long[]{4000, 0, 0}, metrics.getPlayerFreezeMillis());
+        assertArrayEquals(new long[]{0, 0, 1}, metrics.getPlayerClaims());
+        assertArrayEquals(new long[]{0, 0, 0}, metrics.getPlayerClaimNanos());
+        assertEquals(2L, metrics.getDealerIterations());
+        assertEquals(20L, metrics.getDealerIterationAverageNanos());
+        assertEquals(30L, metrics.getDealerIterationMaxNanos());
+        assertTrue(metrics.getPointsPerSecond() > 0);
+    }
+
+    @Test
+    void claimStage_RecordsTheStagesOfClaims() {
+        GameMetrics metrics = new GameMetrics(1);
+        long claimNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        metrics.claimStage(GameMetrics.TO_TOKEN, claimNanos);
+        metrics.claimStage(GameMetrics.TO_RULING, claimNanos);
+        metrics.claimStage(GameMetrics.TO_RULING, claimNanos);
+        metrics.claimStage(GameMetrics.TO_RULING, 0); // unknown start: not recorded
+
+        assertEquals(1L, metrics.getClaimLatencyToTokenNanos()[0]);
+        assertEquals(0L, metrics.getClaimLatencyToNotifyNanos()[0]);
+        assertEquals(0L, metrics.getClaimLatencyToCheckNanos()[0]);
+        long[] ruling = metrics.getClaimLatencyToRulingNanos();
+        assertEquals(2L, ruling[0]);
+        assertTrue(ruling[1] >= TimeUnit.MILLISECONDS.toNanos(5) && ruling[1] <= ruling[4]);
+        assertTrue(metrics.claimLatencyReport().contains("to ruling: count 2"));
+    }
+
+    @Test
+    void tableAcquired_CountsOnlyTheOuterAcquisition() {
+        GameMetrics metrics = new GameMetrics(1);
+        long requested = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        long acquired = metrics.tableAcquired("outer", requested);
+        long reentrant = metrics.tableAcquired("inner", GameMetrics.REENTRANT);
+        assertEquals(GameMetrics.REENTRANT, reentrant);
+        metrics.tableReleased(reentrant);
+        metrics.tableReleased(acquired);
+
+        assertEquals(1L, metrics.getTableAcquisitions());
+        assertTrue(metrics.getTableWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(metrics.getTableHoldMaxNanos(), metrics.getTableHoldNanos());
+        assertEquals(null, metrics.tableContentionReport());
+    }
+
+    @Test
+    void register_ExposesTheCountersOverJmx() throws JMException {
+        GameMetrics metrics = new GameMetrics(2);
+        metrics.claimQueue(() -> 7);
+        metrics.pendingInputs(1, () -> 3);
+        metrics.penalty(1);
+        String name = "bguspl.set:type=GameMetrics,name=GameMetricsTest";
+        metrics.register(logger(), name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(name);
+            assertTrue(server.isRegistered(objectName));
+            assertEquals(1L, server.getAttribute(objectName, "Penalties"));
+            assertEquals(7, server.getAttribute(objectName, "ClaimQueueDepth"));
+            assertArrayEquals(new long[]{0, 1}, (long[]) server.getAttribute(objectName, "PlayerPenalties"));
+            assertArrayEquals(new int[]{0, 3}, (int[]) server.getAttribute(objectName, "PlayerPendingInputs"));
+            assertEquals(5, ((long[]) server.getAttribute(objectName, "ClaimLatencyToRulingNanos")).length);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(new ObjectName(name)));
+    }
+
+    @Test
+    void table_TimedOnlyWithMetrics() {
+        for (boolean on : new boolean[]{false, true}) {
+            Properties properties = new Properties();
+            properties.setProperty("LogLevel", "OFF");
+            properties.setProperty("Rows", "1");
+            properties.setProperty("Columns", "3");
+            properties.setProperty("Metrics", Boolean.toString(on));
+            Logger logger = logger();
+            Config config = new Config(logger, properties);
+            Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+            Table table = new Table(env);
+            table.placeCard(0, 0);
+            table.toggleToken(0, 0, config.featureSize);
+            table.placeTokens(0, new int[]{0});
+            table.removeToken(0, 0);
+
+            // placeCard, toggleToken (with its nested placeToken), placeTokens and removeToken
+            assertEquals(on ? 4L : 0L, env.metrics.getTableAcquisitions());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private static void assertWithin(long expected, long actual) {
+        // a percentile is the upper bound of its bucket: at least the value, and at most 25% above it
+        assertTrue(actual >= expected && actual <= expected * 5 / 4,
+                "expected " + expected + " to " + expected * 5 / 4 + ", got " + actual);
+    }
+
+    @Test
+    void percentile_Empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.count());
+        assertEquals(0L, histogram.percentile(50));
+        assertArrayEquals(new long[]{0, 0, 0, 0, 0}, histogram.summary());
+    }
+
+    @Test
+    void percentile_SmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 8; value++)
+            histogram.record(value);
+        histogram.record(-5); // recorded as 0
+
+        assertEquals(9L, histogram.count());
+        assertEquals(0L, histogram.percentile(10));
+        assertEquals(0L, histogram.percentile(20));
+        assertEquals(3L, histogram.percentile(50));
+        assertEquals(7L, histogram.percentile(100));
+    }
+
+    @Test
+    void percentile_WithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10000; value++)
+            histogram.record(value * 1000);
+
+        assertEquals(10000L, histogram.count());
+        assertWithin(5000 * 1000, histogram.percentile(50));
+        assertWithin(9900 * 1000, histogram.percentile(99));
+        assertWithin(9990 * 1000, histogram.percentile(99.9));
+        // the top bucket is capped by the exact maximum
+        assertEquals(10000L * 1000, histogram.percentile(100));
+        assertEquals(10000L * 1000, histogram.max());
+
+        long[] summary = histogram.summary();
+        assertEquals(10000L, summary[0]);
+        assertEquals(histogram.percentile(50), summary[1]);
+        assertEquals(histogram.percentile(99), summary[2]);
+        assertEquals(histogram.percentile(99.9), summary[3]);
+        assertEquals(histogram.max(), summary[4]);
+    }
+
+    @Test
+    void percentile_Outlier() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 999; i++)
+            histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+
+        assertWithin(1000, histogram.percentile(50));
+        assertWithin(1000, histogram.percentile(99.9));
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+        assertEquals(Long.MAX_VALUE, histogram.max());
+    }
+
+    @Test
+    void record_Concurrently() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long value = (t + 1) * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++)
+                    histogram.record(value);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40000L, histogram.count());
+        assertWithin(2000, histogram.percentile(50));
+        assertEquals(4000L, histogram.max());
+    }
+}
@@ -0,0 +1,151 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkGatewayTest {
+
+    /**
+     * A human player that only records the inputs the gateway hands it (the game is not played).
+     */
+    private static class RecordingPlayer extends Player {
+        final BlockingQueue<Integer> keys = new LinkedBlockingQueue<>();
+        final BlockingQueue<int[]> claims = new ArrayBlockingQueue<>(1);
+
+        RecordingPlayer(Env env, Dealer dealer, Table table, int id) {
+            super(env, dealer, table, id, true);
+        }
+
+        @Override
+        public void keyPressed(int slot) {
+            if (slot == BROKEN_SLOT) throw new IllegalStateException("broken key");
+            keys.add(slot);
+        }
+
+        @Override
+        public boolean offerClaim(int[] slots) {
+            // like a player, a claim is rejected while the previous one is pending
+            return claims.offer(slots);
+        }
+    }
+
+    /**
+     * A key press the players fail on.
+     */
+    private static final int BROKEN_SLOT = 11;
+
+    RecordingPlayer[] players;
+    NetworkGateway gateway;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "1");
+        properties.setProperty("Rows", "3");
+        properties.setProperty("Columns", "4");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("FeatureCount", "4");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        SpectatorStream stream = new SpectatorStream(config, new NullUserInterface());
+        Env env = new Env(logger, config, stream, new UtilImpl(config));
+        Table table = new Table(env);
+        Player[] gamePlayers = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, gamePlayers);
+        players = new RecordingPlayer[config.humanPlayers];
+        for (int i = 0; i < players.length; i++)
+            gamePlayers[i] = players[i] = new RecordingPlayer(env, dealer, table, i);
+        gamePlayers[2] = new Player(env, dealer, table, 2, false);
+        gateway = new NetworkGateway(logger, config, gamePlayers, stream, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.close();
+    }
+
+    private NetworkClient connect() throws IOException {
+        return new NetworkClient("localhost", gateway.port());
+    }
+
+    /**
+     * @return - the next frame of the given type (skipping the state of the table), or null if the connection closed.
+     */
+    private static int[] receive(NetworkClient client, int type) throws IOException {
+        for (int[] frame; (frame = client.receive()) != null; )
+            if (frame[0] == type) return frame;
+        return null;
+    }
+
+    @Test
+    void join_PlaysAsAHumanPlayer() throws IOException, InterruptedException {
+        try (NetworkClient client = connect(); NetworkClient other = connect()) {
+            client.join(0);
+            assertArrayEquals(new int[]{NetworkGateway.JOINED, 0, 3, 4}, receive(client, NetworkGateway.JOINED));
+            client.keyPressed(5);
+            assertEquals(Integer.valueOf(5), players[0].keys.poll(10, TimeUnit.SECONDS));
+
+            // a player someone plays as, a computer player and a player that does not exist
+            other.join(0);
+            assertArrayEquals(new int[]{NetworkGateway.REJECTED, 0, 0, 0}, receive(other, NetworkGateway.REJECTED));
+            other.join(2);
+            assertArrayEquals(new int[]{NetworkGateway.REJECTED, 2, 0, 0}, receive(other, NetworkGateway.REJECTED));
+            other.join(3);
+            assertArrayEquals(new int[]{NetworkGateway.REJECTED, 3, 0, 0}, receive(other, NetworkGateway.REJECTED));
+        }
+    }
+
+    @Test
+    void claim_RejectedWhileAClaimIsPending() throws IOException, InterruptedException {
+        try (NetworkClient client = connect()) {
+            client.join(1);
+            receive(client, NetworkGateway.JOINED);
+            client.claim(new int[]{0, 4, 9});
+            client.claim(new int[]{1, 2, 3});
+            assertArrayEquals(new int[]{NetworkGateway.CLAIM_REJECTED, 1, 0, 0},
+                    receive(client, NetworkGateway.CLAIM_REJECTED));
+            assertArrayEquals(new int[]{0, 4, 9}, players[1].claims.poll(10, TimeUnit.SECONDS));
+            assertTrue(players[1].claims.isEmpty());
+        }
+    }
+
+    @Test
+    void handle_ErrorClosesOnlyItsConnection() throws IOException, InterruptedException {
+        try (NetworkClient client = connect(); NetworkClient broken = connect()) {
+            client.join(0);
+            receive(client, NetworkGateway.JOINED);
+            broken.join(1);
+            receive(broken, NetworkGateway.JOINED);
+
+            broken.keyPressed(BROKEN_SLOT);
+            assertEquals(null, receive(broken, NetworkGateway.JOINED));
+
+            // the I/O thread still serves the other clients
+            client.keyPressed(7);
+            assertEquals(Integer.valueOf(7), players[0].keys.poll(10, TimeUnit.SECONDS));
+            try (NetworkClient next = connect()) {
+                next.join(1);
+                assertArrayEquals(new int[]{NetworkGateway.JOINED, 1, 3, 4}, receive(next, NetworkGateway.JOINED));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerStatsStoreTest {
+
+    Path directory;
+    String prefix;
+    PlayerStatsStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("player-stats");
+        prefix = directory.resolve("stats").toString();
+        store = PlayerStatsStore.open(prefix, Logger.getAnonymousLogger());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        store.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private PlayerStatsStore reopen() throws IOException, InterruptedException {
+        store.close();
+        store = PlayerStatsStore.open(prefix, Logger.getAnonymousLogger());
+        return store;
+    }
+
+    @Test
+    void get_NeverPlayed() {
+        assertEquals(0, (int) store.get("Player 1").games);
+    }
+
+    @Test
+    void add_SumsTheGames() throws IOException, InterruptedException {
+        store.add("Player 1", new PlayerStatsStore.Stats(1, 3, 1, 4, 4000, 2000));
+        store.add("Player 1", new PlayerStatsStore.Stats(1, 1, 0, 1, 1000, 1000));
+        store.add("Player 2", new PlayerStatsStore.Stats(1, 0, 2, 2, 6000, 0));
+
+        PlayerStatsStore.Stats stats = reopen().get("Player 1");
+        assertEquals(2, (int) stats.games);
+        assertEquals(4, (int) stats.points);
+        assertEquals(1, (int) stats.penalties);
+        assertEquals(1000, (int) stats.averageClaimNanos());
+        assertEquals(3000, (int) stats.freezeMillis);
+        assertEquals(2, (int) store.get("Player 2").penalties);
+    }
+
+    @Test
+    void close_KeepsTheStoreOpenForOtherCallers() throws IOException, InterruptedException {
+        PlayerStatsStore other = PlayerStatsStore.open(prefix, Logger.getAnonymousLogger());
+        assertTrue(other == store);
+        other.close();
+
+        store.add("Player 1", new PlayerStatsStore.Stats(1, 3, 1, 4, 4000, 2000));
+        assertTrue(PlayerStatsStore.open(prefix, Logger.getAnonymousLogger()) == store);
+        store.close();
+        assertEquals(1, (int) reopen().get("Player 1").games);
+    }
+
+    /**
+     * @return - the total size of the log segments.
+     */
+    private long logBytes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    @Test
+    void add_CompactsTheLog() throws IOException, InterruptedException {
+        int players = 100;
+        int games = (int) (2 * PlayerStatsStore.COMPACT_BYTES / PlayerStatsStore.RECORD_SIZE / players);
+        for (int game = 0; game < games; game++)
+            for (int player = 0; player < players; player++)
+                store.add("Player " + player, new PlayerStatsStore.Stats(1, player, 0, 0, 0, 0));
+
+        // the full segments are in the index (reopening folds the rest only if it is as large as a full segment)
+        reopen().close();
+        assertTrue(Files.exists(directory.resolve("stats.idx")));
+        assertTrue(logBytes() < PlayerStatsStore.COMPACT_BYTES);
+        store = PlayerStatsStore.open(prefix, Logger.getAnonymousLogger());
+        assertEquals(players, store.all().size());
+        assertEquals(games, (int) store.get("Player 7").games);
+        assertEquals(7 * games, (int) store.get("Player 7").points);
+    }
+
+    @Test
+    void open_KeepsASmallLog() throws IOException, InterruptedException {
+        store.add("Player 1", new PlayerStatsStore.Stats(1, 3, 1, 4, 4000, 2000));
+        reopen().add("Player 1", new PlayerStatsStore.Stats(1, 1, 0, 1, 1000, 1000));
+        reopen();
+
+        // the games of both runs are in their segments, and nothing was folded into an index
+        assertTrue(!Files.exists(directory.resolve("stats.idx")));
+        assertEquals(2 * (PlayerStatsStore.HEADER_SIZE + PlayerStatsStore.RECORD_SIZE), (int) logBytes());
+        assertEquals(2, (int) store.get("Player 1").games);
+        assertEquals(4, (int) store.get("Player 1").points);
+    }
+}
@@ -0,0 +1,124 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class RoomManagerTest {
+
+    RoomManager manager;
+
+    /**
+     * Creates a manager whose executor has the given number of threads.
+     */
+    private void createManager(int threads) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        manager = new RoomManager(logger, threads, Long.MAX_VALUE);
+    }
+
+    @BeforeEach
+    void setUp() {
+        createManager(10);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        manager.shutdown();
+    }
+
+    /**
+     * @return - the configuration of a room with computer players that never runs out of time.
+     */
+    private static Properties room(int computerPlayers, int rows, int regions) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(computerPlayers));
+        properties.setProperty("Rows", Integer.toString(rows));
+        properties.setProperty("Columns", "4");
+        properties.setProperty("DealerRegions", Integer.toString(regions));
+        properties.setProperty("TurnTimeoutSeconds", "0");
+        properties.setProperty("CountdownFps", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("VirtualClock", "True");
+        return properties;
+    }
+
+    private void assertRejected(Properties properties) {
+        try {
+            manager.createRoom(properties, null);
+            fail("the room was admitted");
+        } catch (IllegalStateException expected) {}
+    }
+
+    @Test
+    void createRoom_ReservesAThreadPerPlayerDealerAndPlanner() throws InterruptedException {
+        RoomManager.Room room = manager.createRoom(room(4, 3, 1), null);
+        manager.createRoom(room(2, 3, 1), null);
+        assertRejected(room(1, 3, 1));
+
+        // the threads of a closed room are free again
+        manager.closeRoom(room.id);
+        assertTrue(room.isFinished());
+        assertEquals(null, manager.room(room.id));
+        manager.createRoom(room(4, 3, 1), null);
+    }
+
+    @Test
+    void createRoom_ReservesTheRegionWorkers() throws InterruptedException {
+        // a dealer, a planner, 3 region workers and 6 players
+        assertRejected(room(6, 6, 3));
+        manager.createRoom(room(6, 6, 2), null);
+        assertEquals(1, manager.rooms().size());
+    }
+
+    @Test
+    void createRoom_ClosedRoomsFreeTheirThreads() throws InterruptedException {
+        // 20 rooms of 5 threads each, on 10 threads: two at a time
+        for (int wave = 0; wave < 10; wave++) {
+            RoomManager.Room first = manager.createRoom(room(3, 3, 1), null);
+            RoomManager.Room second = manager.createRoom(room(3, 3, 1), null);
+            assertRejected(room(3, 3, 1));
+            manager.closeRoom(first.id);
+            manager.closeRoom(second.id);
+            assertTrue(first.isFinished() && second.isFinished());
+        }
+        assertEquals(0, manager.rooms().size());
+    }
+
+    @Test
+    void createRoom_ManyRoomsPlay() throws InterruptedException {
+        manager.shutdown();
+        createManager(300);
+        List<RoomManager.Room> rooms = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+            rooms.add(manager.createRoom(room(3, 3, i % 2 == 0 ? 1 : 3), null));
+
+        // every room gets its share of the executor
+        long deadline = System.currentTimeMillis() + 10000;
+        for (RoomManager.Room room : rooms)
+            while (room.dealer.claimsChecked() == 0 && !room.isFinished() && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+        for (RoomManager.Room room : rooms)
+            assertTrue(room.dealer.claimsChecked() > 0 || room.isFinished(), "room " + room.id + " did not play");
+
+        for (RoomManager.Room room : rooms)
+            manager.closeRoom(room.id);
+        for (RoomManager.Room room : rooms)
+            assertTrue(room.isFinished(), "room " + room.id + " did not finish");
+        assertEquals(0, manager.rooms().size());
+    }
+}
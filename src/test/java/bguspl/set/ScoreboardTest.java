@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScoreboardTest {
+
+    Scoreboard scoreboard;
+
+    @BeforeEach
+    void setUp() {
+        scoreboard = new Scoreboard(5);
+    }
+
+    @Test
+    void winners_NoPoints() {
+        assertEquals(0, scoreboard.best());
+        assertEquals(0, scoreboard.leader());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, scoreboard.winners());
+    }
+
+    @Test
+    void point_UpdatesScoreAndRanking() {
+        assertEquals(1, scoreboard.point(3));
+        assertEquals(2, scoreboard.point(3));
+        scoreboard.point(1);
+        scoreboard.point(4);
+        scoreboard.point(4);
+
+        assertEquals(2, scoreboard.score(3));
+        assertEquals(2, scoreboard.best());
+        assertEquals(3, scoreboard.leader());
+        assertArrayEquals(new int[]{3, 4}, scoreboard.winners());
+        assertArrayEquals(new int[]{3, 4, 1}, scoreboard.top(3));
+        assertArrayEquals(new int[]{3, 4, 1, 0, 2}, scoreboard.top(10));
+    }
+
+    @Test
+    void point_Concurrently() throws InterruptedException {
+        int players = 100;
+        int points = 1000;
+        Scoreboard scoreboard = new Scoreboard(players);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int point = 0; point < points; point++)
+                    scoreboard.point(point % players);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(4 * points / players, scoreboard.best());
+        assertEquals(players, scoreboard.winners().length);
+        assertEquals(players, scoreboard.top(players + 1).length);
+    }
+}
@@ -0,0 +1,156 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpectatorStreamTest {
+
+    SpectatorStream stream;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", "3");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("FeatureCount", "4");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        stream = new SpectatorStream(new Config(logger, properties), null);
+    }
+
+    /**
+     * @return - the frames of a poll, each as {type, a, b, c}.
+     */
+    private static List<int[]> frames(ByteBuffer buffer) {
+        assertTrue(buffer != null, "no frames");
+        assertEquals(0, buffer.remaining() % NetworkGateway.FRAME_SIZE);
+        List<int[]> frames = new ArrayList<>();
+        while (buffer.hasRemaining())
+            frames.add(new int[]{buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()});
+        return frames;
+    }
+
+    private static void assertFrame(int[] expected, ByteBuffer buffer) {
+        List<int[]> frames = frames(buffer);
+        assertEquals(1, frames.size());
+        assertArrayEquals(expected, frames.get(0));
+    }
+
+    @Test
+    void poll_FirstIsASnapshotOfTheTable() {
+        stream.placeCard(7, 0);
+        stream.placeCard(9, 2);
+        stream.placeToken(1, 2);
+        stream.setScore(0, 4);
+        stream.setCountdown(5000, false);
+
+        SpectatorStream.Subscription subscription = stream.subscribe(8, null);
+        List<int[]> snapshot = frames(subscription.poll());
+        assertEquals(7, snapshot.size());
+        assertArrayEquals(new int[]{NetworkGateway.SNAPSHOT, 1, 3, 2}, snapshot.get(0));
+        assertArrayEquals(new int[]{NetworkGateway.CARD_PLACED, 0, 7, 0}, snapshot.get(1));
+        assertArrayEquals(new int[]{NetworkGateway.CARD_PLACED, 2, 9, 0}, snapshot.get(2));
+        assertArrayEquals(new int[]{NetworkGateway.TOKEN_PLACED, 1, 2, 0}, snapshot.get(3));
+        assertArrayEquals(new int[]{NetworkGateway.SCORE, 0, 4, 0}, snapshot.get(4));
+        assertArrayEquals(new int[]{NetworkGateway.SCORE, 1, 0, 0}, snapshot.get(5));
+        assertArrayEquals(new int[]{NetworkGateway.COUNTDOWN, 5000, 0, 0}, snapshot.get(6));
+        assertFalse(subscription.hasNext());
+        assertEquals(null, subscription.poll());
+    }
+
+    @Test
+    void poll_DeltasInOrder() {
+        AtomicInteger published = new AtomicInteger();
+        SpectatorStream.Subscription subscription = stream.subscribe(16, published::incrementAndGet);
+        frames(subscription.poll());
+
+        stream.placeCard(5, 1);
+        stream.placeTokens(0, new int[]{1});
+        stream.placeTokens(0, new int[]{0});
+        stream.setCountdown(5900, false);
+        stream.setCountdown(5000, false); // the same second is not published
+        stream.setCountdown(4990, true);
+        stream.removeTokens(1);
+        stream.removeCard(1);
+        stream.announceWinner(new int[]{1});
+
+        assertFrame(new int[]{NetworkGateway.CARD_PLACED, 1, 5, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.TOKEN_PLACED, 0, 1, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.TOKEN_REMOVED, 0, 1, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.TOKEN_PLACED, 0, 0, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.COUNTDOWN, 5900, 0, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.COUNTDOWN, 4990, 1, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.TOKENS_REMOVED, 1, 0, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.CARD_REMOVED, 1, 0, 0}, subscription.poll());
+        assertFrame(new int[]{NetworkGateway.WINNER, 1, 0, 0}, subscription.poll());
+        assertEquals(null, subscription.poll());
+        assertEquals(9, published.get());
+    }
+
+    @Test
+    void poll_ResyncsAfterFallingBehind() {
+        SpectatorStream.Subscription subscription = stream.subscribe(2, null);
+        SpectatorStream.Subscription other = stream.subscribe(8, null);
+        frames(subscription.poll());
+        frames(other.poll());
+
+        // the third delta does not fit: the deltas are dropped and the next poll is a snapshot with all three
+        stream.placeCard(3, 0);
+        stream.placeCard(4, 1);
+        stream.placeCard(6, 2);
+        assertEquals(1, subscription.resyncs());
+        List<int[]> snapshot = frames(subscription.poll());
+        assertArrayEquals(new int[]{NetworkGateway.SNAPSHOT, 1, 3, 2}, snapshot.get(0));
+        assertArrayEquals(new int[]{NetworkGateway.CARD_PLACED, 0, 3, 0}, snapshot.get(1));
+        assertArrayEquals(new int[]{NetworkGateway.CARD_PLACED, 1, 4, 0}, snapshot.get(2));
+        assertArrayEquals(new int[]{NetworkGateway.CARD_PLACED, 2, 6, 0}, snapshot.get(3));
+
+        // then the deltas go on from the snapshot, and the other subscriber was not affected
+        stream.removeCard(0);
+        assertFrame(new int[]{NetworkGateway.CARD_REMOVED, 0, 0, 0}, subscription.poll());
+        assertEquals(null, subscription.poll());
+        assertEquals(0, other.resyncs());
+        for (int card : new int[]{3, 4, 6})
+            assertEquals(card, frames(other.poll()).get(0)[2]);
+        assertFrame(new int[]{NetworkGateway.CARD_REMOVED, 0, 0, 0}, other.poll());
+    }
+
+    @Test
+    void offer_DropsASubscriberThatKeepsFallingBehind() {
+        SpectatorStream.Subscription slow = stream.subscribe(1, null);
+        SpectatorStream.Subscription fast = stream.subscribe(1, null);
+        frames(fast.poll());
+        for (int i = 0; i < 4; i++) {
+            frames(slow.poll());
+            stream.setScore(0, 2 * i + 1);
+            assertFrame(new int[]{NetworkGateway.SCORE, 0, 2 * i + 1, 0}, fast.poll());
+            stream.setScore(0, 2 * i + 2);
+            assertFrame(new int[]{NetworkGateway.SCORE, 0, 2 * i + 2, 0}, fast.poll());
+        }
+
+        assertTrue(slow.isClosed());
+        assertEquals(null, slow.poll());
+        assertFalse(fast.isClosed());
+        assertEquals(1, stream.subscribers());
+
+        stream.dispose();
+        assertTrue(fast.isClosed());
+        assertEquals(0, stream.subscribers());
+    }
+}
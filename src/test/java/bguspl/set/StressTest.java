@@ -0,0 +1,236 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Stress tests: headless games with hundreds of computer players, no delays or freezes, real time and a random spin
+ * in every user interface call (RandomSpinMin/Max), played back to back for a fixed duration. They check that:
+ * 1. The dealer checks at least MIN_CLAIMS_PER_SECOND claims per second of play (the time to start and stop the
+ *    threads is not counted).
+ * 2. No claim waits longer than RULING_BOUND_MILLIS for its ruling, and once a player got its first ruling, it never
+ *    goes longer than that without one (a lost wake-up leaves a player waiting for good).
+ * 3. Every game terminates within TERMINATION_BOUND_MILLIS of being stopped (otherwise the threads are dumped).
+ * 4. The rulings are spread fairly: every player gets at least MIN_FAIR_SHARE of the average number of rulings.
+ * 5. No claim is lost: every claim the dealer ruled a point or a penalty reached its player (except the claims of the
+ *    players that were stopped with the game, at most one each).
+ * The same checks apply with the table split into regions (DealerRegions), where the claims are ruled by several
+ * dealer workers.
+ *
+ * The duration of each test is 5 seconds from the first ruling (starting hundreds of threads can take a while), and
+ * can be changed with -Dstress.seconds=N. The checks on time (1 to 3) depend on the machine, so those tests are tagged
+ * "stress" and only run with mvn -P stress test; the default run plays a short game with fewer players and only
+ * makes the checks that hold on any machine (4 and 5).
+ */
+class StressTest {
+
+    private static final long SECONDS = Long.getLong("stress.seconds", 5);
+
+    private static final double MIN_CLAIMS_PER_SECOND = 500;
+    private static final long RULING_BOUND_MILLIS = 2000;
+    private static final long STARTUP_BOUND_MILLIS = 60000;
+    private static final long TERMINATION_BOUND_MILLIS = 10000;
+    private static final double MIN_FAIR_SHARE = 0.25;
+
+    /**
+     * Real time, except that the players are never frozen (a point freezes its player for a second even with a
+     * PointFreezeSeconds of 0). The other sleeps of the game are the table delay and the end game pause, both 0.
+     */
+    private static class UnfrozenClock extends SystemClock {
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Counts the rulings of each player (every point and penalty calls setFreeze(player, 0) once, since there are no
+     * freezes) and the longest time a player went without one.
+     */
+    private static class RulingCounter extends NullUserInterface {
+        final AtomicLongArray rulings;
+        final AtomicLongArray lastRulingNanos; // 0 until the first ruling
+        final LongAccumulator maxGapNanos = new LongAccumulator(Long::max, 0);
+        final CountDownLatch firstRuling = new CountDownLatch(1);
+
+        RulingCounter(int players) {
+            rulings = new AtomicLongArray(players);
+            lastRulingNanos = new AtomicLongArray(players);
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            if (millies != 0) return;
+            long now = System.nanoTime();
+            rulings.incrementAndGet(player);
+            long last = lastRulingNanos.getAndSet(player, now);
+            if (last != 0) maxGapNanos.accumulate(now - last);
+            firstRuling.countDown();
+        }
+
+        // Counts the time from the last ruling of each player to the latest ruling of any player, when the game is
+        // stopped (a lost wake-up stalls one player while the others go on; when all of them stall, e.g. while the
+        // game ends, the termination bound applies)
+        void stop() {
+            long latest = 0;
+            for (int i = 0; i < lastRulingNanos.length(); i++)
+                latest = Math.max(latest, lastRulingNanos.get(i));
+            for (int i = 0; i < lastRulingNanos.length(); i++) {
+                long last = lastRulingNanos.get(i);
+                if (last != 0) maxGapNanos.accumulate(latest - last);
+            }
+        }
+    }
+
+    /**
+     * The totals of the games of a test.
+     */
+    private static class Totals {
+        int games;
+        long claims;
+        long playNanos;
+        long[] rulings;
+        long maxGapNanos;
+        long maxRulingNanos;
+    }
+
+    @Test
+    void fewPlayers_NoClaimLostAndFair() throws InterruptedException {
+        Totals totals = play(20, 0, 0, 3, 1, TimeUnit.SECONDS.toNanos(1));
+        checkFairness(totals);
+    }
+
+    @Test
+    @Tag("stress")
+    void hundredsOfPlayers() throws InterruptedException {
+        check(200, 0, 0, 3, 1);
+    }
+
+    @Test
+    @Tag("stress")
+    void hundredsOfPlayersWithJitter() throws InterruptedException {
+        check(200, 0, 20, 3, 1);
+    }
+
+    @Test
+    @Tag("stress")
+    void threeHundredPlayersWithJitter() throws InterruptedException {
+        check(300, 0, 5, 3, 1);
+    }
+
+    @Test
+    @Tag("stress")
+    void hundredsOfPlayersInRegions() throws InterruptedException {
+        check(200, 0, 20, 6, 3);
+    }
+
+    private static void check(int players, long spinMin, long spinMax, int rows, int regions) throws InterruptedException {
+        Totals totals = play(players, spinMin, spinMax, rows, regions, TimeUnit.SECONDS.toNanos(SECONDS));
+        double claimsPerSecond = totals.claims * 1e9 / Math.max(1, totals.playNanos);
+        assertTrue(claimsPerSecond >= MIN_CLAIMS_PER_SECOND,
+                "claims per second: " + claimsPerSecond + " in " + totals.games + " games");
+        assertTrue(totals.maxRulingNanos <= TimeUnit.MILLISECONDS.toNanos(RULING_BOUND_MILLIS),
+                "longest wait for a ruling: " + totals.maxRulingNanos / 1000000 + "ms");
+        assertTrue(totals.maxGapNanos <= TimeUnit.MILLISECONDS.toNanos(RULING_BOUND_MILLIS),
+                "longest time a player went without a ruling: " + totals.maxGapNanos / 1000000 + "ms");
+        checkFairness(totals);
+    }
+
+    private static void checkFairness(Totals totals) {
+        double average = Arrays.stream(totals.rulings).average().orElse(0);
+        long min = Arrays.stream(totals.rulings).min().orElse(0);
+        assertTrue(min >= MIN_FAIR_SHARE * average,
+                "fewest rulings of a player: " + min + ", average: " + average);
+    }
+
+    /**
+     * Plays games back to back for the given duration from the first ruling (the last game is stopped when the time
+     * is up).
+     */
+    private static Totals play(int playerCount, long spinMin, long spinMax, int rows, int regions, long nanos)
+            throws InterruptedException {
+        Totals totals = new Totals();
+        totals.rulings = new long[playerCount];
+        long deadline = 0;
+        for (long seed = 0; deadline == 0 || System.nanoTime() < deadline; seed++) {
+            Properties properties = Simulator.properties(playerCount, rows, 4, 3, 4, seed);
+            properties.setProperty("DealerRegions", Integer.toString(regions));
+            properties.setProperty("RandomSpinMin", Long.toString(spinMin));
+            properties.setProperty("RandomSpinMax", Long.toString(spinMax));
+            Logger logger = Logger.getAnonymousLogger();
+            logger.setUseParentHandlers(false);
+            Config config = new Config(logger, properties);
+            Util util = new UtilImpl(config);
+            RulingCounter counter = new RulingCounter(config.players);
+            Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, counter), util, new UnfrozenClock());
+
+            Table table = new Table(env);
+            Player[] players = new Player[config.players];
+            Dealer dealer = new Dealer(env, table, players);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, false);
+
+            Thread dealerThread = new Thread(dealer, "dealer");
+            AtomicReference<Throwable> dealerError = new AtomicReference<>();
+            dealerThread.setUncaughtExceptionHandler((thread, error) -> dealerError.set(error));
+            dealerThread.start();
+            if (deadline == 0) {
+                if (!counter.firstRuling.await(STARTUP_BOUND_MILLIS, TimeUnit.MILLISECONDS))
+                    fail("no ruling within " + STARTUP_BOUND_MILLIS + "ms:" + System.lineSeparator() + threadDump());
+                deadline = System.nanoTime() + nanos;
+            }
+            dealerThread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (dealerThread.isAlive()) {
+                counter.stop();
+                dealer.terminate();
+                dealerThread.join(TERMINATION_BOUND_MILLIS);
+                if (dealerThread.isAlive())
+                    fail("the game did not terminate within " + TERMINATION_BOUND_MILLIS + "ms:" + System.lineSeparator() + threadDump());
+            }
+
+            if (dealerError.get() != null)
+                fail("the dealer failed in game " + seed + ": " + dealerError.get());
+
+            totals.games++;
+            totals.claims += dealer.claimsChecked();
+            totals.playNanos += dealer.playNanos();
+            long notified = 0;
+            for (int i = 0; i < playerCount; i++) {
+                totals.rulings[i] += counter.rulings.get(i);
+                notified += counter.rulings.get(i);
+            }
+            totals.maxGapNanos = Math.max(totals.maxGapNanos, counter.maxGapNanos.get());
+            totals.maxRulingNanos = Math.max(totals.maxRulingNanos, env.metrics.getClaimLatencyToRulingNanos()[4]);
+            long unnotified = env.metrics.getPoints() + env.metrics.getPenalties() - notified;
+            assertTrue(unnotified >= 0 && unnotified <= playerCount,
+                    "rulings that did not reach their player in game " + seed + ": " + unnotified);
+        }
+        return totals;
+    }
+
+    private static String threadDump() {
+        StringBuilder dump = new StringBuilder();
+        long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+        if (deadlocked != null) dump.append("deadlocked threads: ").append(Arrays.toString(deadlocked)).append(System.lineSeparator());
+        for (ThreadInfo thread : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true))
+            dump.append(thread);
+        return dump.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package bguspl.set;
+
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableProfilerTest {
+
+    /**
+     * @return - the lines of a contention report after the header, each split into its columns (thread, method,
+     *           acquisitions, wait, hold, max hold).
+     */
+    private static List<String[]> rows(String report) {
+        String[] lines = report.split(System.lineSeparator());
+        assertEquals("table contention:", lines[0]);
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 2; i < lines.length; i++)
+            rows.add(lines[i].trim().split("\\s+"));
+        return rows;
+    }
+
+    private static String[] row(List<String[]> rows, String thread, String method) {
+        for (String[] row : rows)
+            if (row[0].equals(thread) && row[1].equals(method)) return row;
+        throw new AssertionError("no line for " + thread + " " + method);
+    }
+
+    // Parses a column like "4.000ms" (formatted in the default locale)
+    private static double millis(String column) {
+        return Double.parseDouble(column.substring(0, column.length() - 2).replace(',', '.'));
+    }
+
+    @Test
+    void report_PerThreadAndMethod() throws InterruptedException {
+        TableProfiler profiler = new TableProfiler();
+        String main = Thread.currentThread().getName();
+        profiler.acquired("toggleToken", TimeUnit.MILLISECONDS.toNanos(1));
+        profiler.released(TimeUnit.MILLISECONDS.toNanos(2));
+        profiler.acquired("toggleToken", TimeUnit.MILLISECONDS.toNanos(3));
+        profiler.released(TimeUnit.MILLISECONDS.toNanos(4));
+        profiler.acquired("rule", 0);
+        profiler.released(TimeUnit.MILLISECONDS.toNanos(10));
+        profiler.released(TimeUnit.MILLISECONDS.toNanos(100)); // not holding: ignored
+
+        Thread other = new Thread(() -> {
+            profiler.acquired("toggleToken", TimeUnit.MILLISECONDS.toNanos(5));
+            profiler.released(TimeUnit.MILLISECONDS.toNanos(1));
+        }, "other");
+        other.start();
+        other.join();
+
+        List<String[]> rows = rows(profiler.report());
+        assertEquals(5, rows.size());
+        // the longest total hold first
+        assertEquals("rule", rows.get(0)[1]);
+
+        String[] toggle = row(rows, main, "toggleToken");
+        assertEquals("2", toggle[2]);
+        assertEquals(4.0, millis(toggle[3]));
+        assertEquals(6.0, millis(toggle[4]));
+        assertEquals(4.0, millis(toggle[5]));
+
+        String[] all = row(rows, "(all)", "toggleToken");
+        assertEquals("3", all[2]);
+        assertEquals(9.0, millis(all[3]));
+        assertEquals(7.0, millis(all[4]));
+        assertEquals(4.0, millis(all[5]));
+        assertEquals(10.0, millis(row(rows, "(all)", "rule")[4]));
+    }
+
+    @Test
+    void report_NestedOperationsCountTowardsTheOuterOne() {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", "3");
+        properties.setProperty("TableProfiling", "True");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+        Table table = new Table(env);
+        table.placeCard(0, 0);
+        table.toggleToken(0, 0, config.featureSize);
+        table.toggleToken(0, 0, config.featureSize);
+
+        String main = Thread.currentThread().getName();
+        List<String[]> rows = rows(env.metrics.tableContentionReport());
+        assertEquals("1", row(rows, main, "placeCard")[2]);
+        assertEquals("2", row(rows, main, "toggleToken")[2]);
+        for (String[] row : rows)
+            assertTrue(!row[1].equals("placeToken") && !row[1].equals("removeToken"), "nested " + row[1]);
+        assertEquals(3L, env.metrics.getTableAcquisitions());
+    }
+}
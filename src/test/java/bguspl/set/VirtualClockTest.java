@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    VirtualClock clock;
+    BlockingQueue<Integer> queue;
+
+    @BeforeEach
+    void setUp() {
+        clock = new VirtualClock();
+        queue = new LinkedBlockingQueue<>();
+    }
+
+    @Test
+    void sleep_WithoutKeeper() throws InterruptedException {
+        clock.sleep(1000);
+        clock.sleep(500);
+        assertEquals(1500, clock.millis());
+    }
+
+    @Test
+    void poll_MovesToTheEndOfTheTimeout() throws InterruptedException {
+        assertEquals(null, clock.poll(queue, 10));
+        assertEquals(10, clock.millis());
+        queue.add(7);
+        assertEquals(Integer.valueOf(7), clock.poll(queue, 10));
+        assertEquals(10, clock.millis());
+    }
+
+    @Test
+    void poll_MovesToTheDeadline() throws InterruptedException {
+        assertEquals(null, clock.poll(queue, 0));
+        assertEquals(0, clock.millis());
+        clock.setDeadline(60000);
+        assertEquals(null, clock.poll(queue, 0));
+        assertEquals(60000, clock.millis());
+        // a deadline that passed is not waited for again
+        assertEquals(null, clock.poll(queue, 0));
+        assertEquals(60000, clock.millis());
+    }
+
+    /**
+     * Waits until a thread waits (e.g. in a sleep of the clock).
+     */
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.TIMED_WAITING && thread.isAlive())
+            Thread.yield();
+    }
+
+    @Test
+    void poll_MovesToTheNextSleep() throws InterruptedException {
+        clock.poll(queue, 0);
+        clock.setDeadline(60000);
+        Thread sleeper = new Thread(() -> {
+            try {
+                clock.sleep(1000);
+                clock.sleep(1500);
+            } catch (InterruptedException ignored) {}
+        });
+        sleeper.start();
+
+        // each sleep ends when the keeper has nothing else to wait for, and the deadline comes after them
+        awaitWaiting(sleeper);
+        clock.poll(queue, 0);
+        assertEquals(1000, clock.millis());
+        awaitWaiting(sleeper);
+        clock.poll(queue, 0);
+        assertEquals(2500, clock.millis());
+        sleeper.join();
+        clock.poll(queue, 0);
+        assertEquals(60000, clock.millis());
+    }
+
+    @Test
+    void turnTimeout_RunsInVirtualTime() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("TurnTimeoutSeconds", "60");
+        properties.setProperty("CountdownFps", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config), clock);
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, new Player[0]);
+
+        long start = System.nanoTime();
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        // nobody claims anything, so every round ends when its turn times out
+        while (clock.millis() < 3 * 60000 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10))
+            Thread.sleep(1);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        dealer.terminate();
+        dealerThread.join();
+
+        assertTrue(clock.millis() >= 3 * 60000, "three turns did not time out in " + elapsed + "ms");
+        assertTrue(elapsed < 1000, "three turns took " + elapsed + "ms");
+        // the time moved from one turn's end to the next
+        assertEquals(0L, clock.millis() % 60000);
+    }
+}
@@ -0,0 +1,124 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The routing and ruling of claims on a table split into 3 regions of 2 rows (slots 0-7, 8-15 and 16-23). The dealer
+ * and its workers are not started: the claims are ruled right away, as the replayer does.
+ */
+class DealerTest {
+
+    Env env;
+    Table table;
+    Dealer dealer;
+
+    /**
+     * Cards 0, 1 and 2 differ in one feature only, so they are a legal set; 3, 4 and 9 are not.
+     */
+    private static final int[] LEGAL = {0, 1, 2};
+    private static final int[] ILLEGAL = {3, 4, 9};
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("Rows", "6");
+        properties.setProperty("Columns", "4");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("FeatureCount", "4");
+        properties.setProperty("DealerRegions", "3");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        Player[] players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+    }
+
+    /**
+     * Places the given cards on the given slots and a token of the player on each of them, and sends the claim.
+     */
+    private void claim(int player, int[] cards, int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            table.placeCard(cards[i], slots[i]);
+            table.placeToken(player, slots[i]);
+        }
+        dealer.notifyDealer(player);
+    }
+
+    @Test
+    void claimRegion_InOneRegion() {
+        claim(0, LEGAL, new int[]{8, 9, 13});
+        assertEquals(1, dealer.claimRegion(0));
+
+        assertEquals(Integer.valueOf(1), dealer.ruleNow(0));
+        assertTrue(table.shouldRemoveCard[8] && table.shouldRemoveCard[9] && table.shouldRemoveCard[13]);
+        dealer.removeCardsFromTable(8, 16);
+        assertEquals(0, table.countCards());
+    }
+
+    @Test
+    void claimRegion_SpanningRegions() {
+        claim(0, LEGAL, new int[]{0, 8, 16});
+        assertEquals(Dealer.SPANNING, dealer.claimRegion(0));
+        claim(1, ILLEGAL, new int[]{1, 9, 17});
+        assertEquals(Dealer.SPANNING, dealer.claimRegion(1));
+
+        assertEquals(Integer.valueOf(1), dealer.ruleNow(0));
+        assertEquals(Integer.valueOf(0), dealer.ruleNow(1));
+        assertEquals(1L, env.metrics.getPoints());
+        assertEquals(1L, env.metrics.getPenalties());
+
+        // the cards of the spanning set are removed from all three regions
+        dealer.removeCardsFromTable(0, env.config.tableSize);
+        assertEquals(null, table.slotToCard[0]);
+        assertEquals(null, table.slotToCard[8]);
+        assertEquals(null, table.slotToCard[16]);
+        assertEquals(3, table.countCards());
+    }
+
+    @Test
+    void rule_StaleWhenARegionRemovedACard() {
+        // the claim waits in the dealer's queue while the worker of region 1 removes one of its cards
+        claim(0, LEGAL, new int[]{0, 8, 16});
+        table.removeCard(8);
+        assertEquals(Dealer.STALE, dealer.claimRegion(0));
+
+        assertEquals(Integer.valueOf(-1), dealer.ruleNow(0));
+        assertEquals(1L, env.metrics.getStaleClaims());
+        assertEquals(0L, env.metrics.getPoints());
+        assertFalse(table.shouldRemoveCard[0] || table.shouldRemoveCard[16]);
+    }
+
+    @Test
+    void removeCardsFromTable_WithdrawsTheClaimsOfTheCards() {
+        claim(0, LEGAL, new int[]{0, 8, 16});
+        claim(1, ILLEGAL, new int[]{1, 9, 17});
+
+        // a point in region 1 removes a card of player 0's claim, which is withdrawn as stale
+        table.shouldRemoveCard[8] = true;
+        dealer.removeCardsFromTable(8, 16);
+        assertEquals(1L, env.metrics.getStaleClaims());
+        assertEquals(null, dealer.ruleNow(0));
+
+        // the other claim is still ruled
+        assertEquals(Integer.valueOf(0), dealer.ruleNow(1));
+    }
+}
@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class GameReplayerTest {
+
+    Path trace;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        trace = Files.createTempFile("game", ".trace");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(trace);
+    }
+
+    /**
+     * Plays a game for a while and records it: a human player who presses random keys and two computer players.
+     */
+    private void record() throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "1");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("Rows", "3");
+        properties.setProperty("Columns", "4");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("FeatureCount", "4");
+        properties.setProperty("TurnTimeoutSeconds", "0.05");
+        properties.setProperty("CountdownFps", "0");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+        dealer.setRecorder(new GameRecorder(logger, config, trace.toString()));
+
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        Random random = new Random(0);
+        for (long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1); System.nanoTime() < end; ) {
+            players[0].keyPressed(random.nextInt(config.tableSize));
+            Thread.sleep(1);
+        }
+        dealer.terminate();
+        dealerThread.join();
+    }
+
+    @Test
+    void replay_MatchesTheRecording() throws IOException, InterruptedException {
+        record();
+
+        List<String> lines = Files.readAllLines(trace);
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("KEY ")), "no key presses were recorded");
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("RULING ")), "no claims were ruled");
+        assertTrue(GameReplayer.replay(trace.toString()) == lines.size() - 1);
+    }
+
+    @Test
+    void replay_DifferentSeed() throws IOException, InterruptedException {
+        record();
+
+        // the first round is dealt from another shuffle
+        List<String> lines = Files.readAllLines(trace);
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith("SEED ")) {
+                lines.set(i, "SEED " + (Long.parseLong(lines.get(i).substring(5)) + 1));
+                break;
+            }
+        }
+        Files.write(trace, lines);
+        try {
+            GameReplayer.replay(trace.toString());
+            fail("the replay matched a recording with another seed");
+        } catch (IllegalStateException expected) {}
+    }
+}
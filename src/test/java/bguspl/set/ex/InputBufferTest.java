@@ -0,0 +1,132 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.NullUserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputBufferTest {
+
+    private static void assertPolls(InputBuffer buffer, int... slots) {
+        for (int slot : slots)
+            assertEquals(slot, buffer.poll());
+        assertEquals(InputBuffer.NONE, buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static InputBuffer fill(InputBuffer.OverflowPolicy policy) {
+        InputBuffer buffer = new InputBuffer(4, policy);
+        for (int slot = 0; slot < 4; slot++)
+            assertTrue(buffer.offer(slot));
+        return buffer;
+    }
+
+    @Test
+    void offer_KeepsTheOrder() {
+        InputBuffer buffer = new InputBuffer(4, InputBuffer.OverflowPolicy.DROP_NEWEST);
+        // wrap around the ring a few times
+        for (int round = 0; round < 3; round++) {
+            assertTrue(buffer.offer(round));
+            assertTrue(buffer.offer(round + 10));
+            assertEquals(2, buffer.size());
+            assertPolls(buffer, round, round + 10);
+        }
+    }
+
+    @Test
+    void offer_DropNewest() {
+        InputBuffer buffer = fill(InputBuffer.OverflowPolicy.DROP_NEWEST);
+
+        assertFalse(buffer.offer(7));
+        assertEquals(1, (int) buffer.dropped());
+        assertPolls(buffer, 0, 1, 2, 3);
+    }
+
+    @Test
+    void offer_DropOldest() {
+        InputBuffer buffer = fill(InputBuffer.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(buffer.offer(7));
+        assertEquals(1, (int) buffer.dropped());
+        assertPolls(buffer, 1, 2, 3, 7);
+    }
+
+    @Test
+    void offer_CoalesceWhenNotFull() {
+        InputBuffer buffer = new InputBuffer(4, InputBuffer.OverflowPolicy.COALESCE);
+        buffer.offer(1);
+        buffer.offer(2);
+
+        // the second press of slot 1 cancels the first one out
+        assertFalse(buffer.offer(1));
+        assertEquals(1, (int) buffer.coalesced());
+        // a third press is a new one
+        assertTrue(buffer.offer(1));
+        assertPolls(buffer, 2, 1);
+    }
+
+    @Test
+    void offer_CoalesceWhenFull() {
+        InputBuffer buffer = fill(InputBuffer.OverflowPolicy.COALESCE);
+
+        assertFalse(buffer.offer(2));
+        assertEquals(1, (int) buffer.coalesced());
+        // a slot that is not pending is dropped
+        assertFalse(buffer.offer(7));
+        assertEquals(1, (int) buffer.dropped());
+        assertPolls(buffer, 0, 1, 3);
+    }
+
+    @Test
+    void clear_DiscardsThePendingPresses() {
+        InputBuffer buffer = fill(InputBuffer.OverflowPolicy.DROP_NEWEST);
+
+        buffer.clear();
+        assertPolls(buffer);
+        assertTrue(buffer.offer(5));
+        assertPolls(buffer, 5);
+    }
+
+    @Test
+    void player_CountersInTheGameMetrics() {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("InputOverflowPolicy", "COALESCE");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NullUserInterface(), new UtilImpl(config));
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+
+        // the player threads are not running, so the presses stay in the buffer (4 cells for a set of 3, and the
+        // cancelled press keeps its cell until it is polled)
+        for (int slot : new int[]{0, 1, 0, 2, 3, 4})
+            players[1].keyPressed(slot);
+        assertArrayEquals(new long[]{0, 1}, env.metrics.getPlayerCoalescedInputs());
+        assertArrayEquals(new long[]{0, 1}, env.metrics.getPlayerDroppedInputs());
+        assertArrayEquals(new int[]{0, 4}, env.metrics.getPlayerPendingInputs());
+    }
+
+    @Test
+    void parsePolicy_FallsBackToDropNewest() {
+        assertEquals(InputBuffer.OverflowPolicy.COALESCE, InputBuffer.parsePolicy(" coalesce "));
+        assertEquals(InputBuffer.OverflowPolicy.DROP_NEWEST, InputBuffer.parsePolicy("unknown"));
+        assertEquals(InputBuffer.OverflowPolicy.DROP_NEWEST, InputBuffer.parsePolicy(null));
+    }
+}
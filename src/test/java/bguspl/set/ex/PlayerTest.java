@@ -14,6 +14,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -70,4 +71,30 @@ class PlayerTest {
         // check that ui.setScore was called with the player's id and the correct score
         verify(ui).setScore(eq(player.id), eq(expectedScore));
     }
+
+    @Test
+    void offerClaim_WrongNumberOfSlots() {
+
+        assertFalse(player.offerClaim(new int[]{0, 1}));
+        assertFalse(player.offerClaim(new int[]{0, 1, 2, 3}));
+
+        // nothing was claimed, so a whole selection is still accepted
+        assertTrue(player.offerClaim(new int[]{0, 1, 2}));
+    }
+
+    @Test
+    void offerClaim_PreviousClaimPending() {
+
+        // the player thread is not running, so the first claim stays pending
+        assertTrue(player.offerClaim(new int[]{0, 1, 2}));
+        assertFalse(player.offerClaim(new int[]{3, 4, 5}));
+    }
+
+    @Test
+    void claimSet_WrongNumberOfSlots() {
+
+        // returns at once instead of waiting for a claim to be handled
+        player.claimSet(new int[]{0, 1});
+        assertTrue(player.offerClaim(new int[]{0, 1, 2}));
+    }
 }
\ No newline at end of file
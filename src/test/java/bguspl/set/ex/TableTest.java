@@ -1,9 +1,12 @@
 package bguspl.set.ex;
 
+import bguspl.set.Clock;
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.SystemClock;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.VirtualClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -12,6 +15,8 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
@@ -21,13 +26,17 @@ class TableTest {
 
     @BeforeEach
     void setUp() {
+        createTable("0", new SystemClock());
+    }
+
+    private void createTable(String tableDelaySeconds, Clock clock) {
 
         Properties properties = new Properties();
         properties.put("Rows", "2");
         properties.put("Columns", "2");
         properties.put("FeatureSize", "3");
         properties.put("FeatureCount", "4");
-        properties.put("TableDelaySeconds", "0");
+        properties.put("TableDelaySeconds", tableDelaySeconds);
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
@@ -35,7 +44,7 @@ class TableTest {
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil(), clock);
         table = new Table(env, slotToCard, cardToSlot);
     }
 
@@ -95,6 +104,82 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void placeCards_DelaysEachCard() {
+        VirtualClock clock = new VirtualClock();
+        createTable("0.1", clock);
+        table.placeCards(new int[]{3, 1}, new int[]{7, 8});
+
+        assertEquals(7, (int) slotToCard[3]);
+        assertEquals(1, (int) cardToSlot[8]);
+        assertEquals(200, clock.millis());
+    }
+
+    @Test
+    void placeLayout_DelaysOnce() {
+        VirtualClock clock = new VirtualClock();
+        createTable("0.1", clock);
+        table.placeLayout(new int[]{7, 8, 9});
+
+        for (int slot = 0; slot < 3; slot++)
+            assertEquals(7 + slot, (int) slotToCard[slot]);
+        assertEquals(100, clock.millis());
+    }
+
+    private void assertTokens(int player, int... slots) {
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            boolean expected = false;
+            for (int tokenSlot : slots)
+                expected |= tokenSlot == slot;
+            assertEquals(expected, table.tokensOnSlot.get(slot).contains(player));
+        }
+    }
+
+    @Test
+    void placeTokens_AllSlotsAreFilled() {
+        fillAllSlots();
+
+        assertTrue(table.placeTokens(0, new int[]{0, 1, 2}));
+        assertTokens(0, 0, 1, 2);
+    }
+
+    @Test
+    void placeTokens_ReplacesPreviousTokens() {
+        fillAllSlots();
+        table.placeTokens(0, new int[]{0, 1, 2});
+        table.placeTokens(1, new int[]{0, 1, 2});
+
+        assertTrue(table.placeTokens(0, new int[]{1, 2, 3}));
+        assertTokens(0, 1, 2, 3);
+        assertTokens(1, 0, 1, 2);
+    }
+
+    @Test
+    void placeTokens_DuplicateSlot() {
+        fillAllSlots();
+        table.placeTokens(0, new int[]{0, 1, 2});
+
+        assertFalse(table.placeTokens(0, new int[]{1, 1, 3}));
+        assertTokens(0, 0, 1, 2);
+    }
+
+    @Test
+    void placeTokens_EmptySlot() {
+        fillSomeSlots();
+
+        assertFalse(table.placeTokens(0, new int[]{0, 1, 2}));
+        assertTokens(0);
+    }
+
+    @Test
+    void placeTokens_SlotOutOfRange() {
+        fillAllSlots();
+
+        assertFalse(table.placeTokens(0, new int[]{1, 2, slotToCard.length}));
+        assertFalse(table.placeTokens(0, new int[]{-1, 1, 2}));
+        assertTokens(0);
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -119,6 +204,8 @@ class TableTest {
         @Override
         public void removeToken(int player, int slot) {}
         @Override
+        public void placeTokens(int player, int[] slots) {}
+        @Override
         public void announceWinner(int[] players) {}
     };
 